@@ -0,0 +1,207 @@
+import global.codec.MessageCodec;
+import global.config.ConfigReader;
+import global.enums.Mode;
+import global.object.EditMessage;
+import server.core.Server;
+import server.ui.ServerDashboardUI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// io=thread / virtual / nio 의 동시 접속 수용량과 브로드캐스트 지연 비교.
+// 같은 JVM 에 서버를 띄우고 (서버 대시보드 창이 뜬다) 가상 스레드 클라이언트 N 개를 붙인다.
+// 1) 접속: N 개가 모두 DOC_LIST 를 받을 때까지의 시간, 늘어난 플랫폼 스레드 수와 힙 (클라이언트 쪽 포함)
+// 2) 브로드캐스트: N 개가 한 문서를 열고 한 명이 INSERT 를 보내면 나머지가 받기까지의 지연 (p50/p99/max)
+// 실행: javac -d out -sourcepath src bench/ConnectionBench.java && java -cp out ConnectionBench [세션 수...]
+// 세션마다 소켓 두 개(서버/클라이언트 쪽)를 여니 ulimit -n 을 넉넉히 잡는다.
+public class ConnectionBench {
+
+    private static final String[] MODES = {"thread", "virtual", "nio"};
+    private static final int EDITS = 200;
+    private static final long TIMEOUT_MS = 60_000;
+
+    // 벤치 클라이언트 하나: 읽기는 가상 스레드에서, 받은 INSERT 는 보낸 시각과 비교해 지연을 적는다
+    private static final class Session {
+        final Socket socket;
+        final DataOutputStream out;
+        final DataInputStream in;
+        final LinkedBlockingQueue<EditMessage> control = new LinkedBlockingQueue<>();
+        final long[] latency = new long[EDITS];
+        volatile long[] sentAt;
+
+        Session(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Thread.ofVirtual().start(this::readLoop);
+        }
+
+        private void readLoop() {
+            try {
+                while (true) {
+                    EditMessage msg = MessageCodec.readFrame(in);
+                    if (msg.mode == Mode.BATCH) {
+                        if (msg.ops != null) for (EditMessage op : msg.ops) received(op);
+                    } else {
+                        received(msg);
+                    }
+                }
+            } catch (Exception e) {
+                // 종료
+            }
+        }
+
+        private void received(EditMessage msg) {
+            long[] sent = sentAt;
+            if (msg.mode == Mode.INSERT && sent != null) {
+                int seq = Integer.parseInt(msg.text);
+                latency[seq] = System.nanoTime() - sent[seq];
+                return;
+            }
+            control.add(msg);
+        }
+
+        synchronized void send(EditMessage msg) throws IOException {
+            MessageCodec.writeFrame(out, msg);
+        }
+
+        EditMessage await(Mode mode) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT_MS;
+            while (System.currentTimeMillis() < end) {
+                EditMessage m = control.poll(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (m == null) break;
+                if (m.mode == mode) return m;
+            }
+            throw new IllegalStateException("timeout waiting for " + mode);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = (args.length == 0) ? new int[]{1_000, 5_000} : parse(args);
+
+        System.out.printf("%-8s %8s %10s %10s %10s %10s %10s %10s%n",
+                "io", "sessions", "connect ms", "+threads", "+heap MB", "p50 ms", "p99 ms", "max ms");
+        for (int n : sizes) {
+            for (String mode : MODES) {
+                try {
+                    run(mode, n);
+                } catch (Exception | OutOfMemoryError e) {
+                    System.out.printf("%-8s %8d  failed: %s%n", mode, n, e);
+                }
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(String mode, int n) throws Exception {
+        int port = 20000 + new Random().nextInt(20000);
+        Map<String, String> opt = new HashMap<>();
+        opt.put("io", mode);
+        opt.put("storage.fsync", "false");
+        Server server = new Server(new ConfigReader.ServerConfig("127.0.0.1", port, opt), new ServerDashboardUI());
+        Thread.ofPlatform().daemon(true).start(server::startServer);
+        Thread.sleep(500);
+
+        List<Session> sessions = new ArrayList<>(n);
+        try {
+            // ===== 1) 접속 =====
+            int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+            long heapBefore = usedHeap();
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) sessions.add(new Session(port));
+            for (Session s : sessions) s.await(Mode.DOC_LIST);
+            long connectMs = (System.nanoTime() - t0) / 1_000_000;
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+            long heapMb = (usedHeap() - heapBefore) / (1024 * 1024);
+
+            // ===== 2) 브로드캐스트 =====
+            Session writer = sessions.get(0);
+            EditMessage create = message(Mode.DOC_CREATE, "w", null);
+            create.docTitle = "bench-" + port;
+            writer.send(create);
+            EditMessage sync = writer.await(Mode.FULL_SYNC);
+            String docId = sync.docId;
+            long version = sync.version;
+
+            for (int i = 1; i < n; i++) sessions.get(i).send(message(Mode.DOC_OPEN, "r" + i, docId));
+            for (int i = 1; i < n; i++) sessions.get(i).await(Mode.SYNC_END);
+
+            long[] sentAt = new long[EDITS];
+            for (Session s : sessions) s.sentAt = sentAt;
+            for (int seq = 0; seq < EDITS; seq++) {
+                EditMessage edit = message(Mode.INSERT, "w", docId);
+                edit.text = Integer.toString(seq);
+                edit.offset = 0;
+                edit.length = edit.text.length();
+                edit.version = version;
+                sentAt[seq] = System.nanoTime();
+                writer.send(edit);
+                version = writer.await(Mode.ACK).version;
+            }
+            awaitDeliveries(sessions);
+
+            long[] all = new long[(n - 1) * EDITS];
+            int k = 0;
+            for (int i = 1; i < n; i++) for (long l : sessions.get(i).latency) all[k++] = l;
+            Arrays.sort(all);
+            System.out.printf("%-8s %8d %10d %10d %10d %10.2f %10.2f %10.2f%n", mode, n, connectMs, threads, heapMb,
+                    all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+
+            writer.send(message(Mode.DOC_DELETE, "w", docId));
+        } finally {
+            for (Session s : sessions) s.close();
+            server.disconnect();
+            Thread.sleep(500);
+        }
+    }
+
+    // 마지막 편집까지 모두 받을 때까지 (못 받은 것은 시간 초과)
+    private static void awaitDeliveries(List<Session> sessions) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT_MS;
+        for (int i = 1; i < sessions.size(); i++) {
+            while (sessions.get(i).latency[EDITS - 1] == 0) {
+                if (System.currentTimeMillis() > end) throw new IllegalStateException("broadcast timeout");
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private static EditMessage message(Mode mode, String user, String docId) {
+        EditMessage m = new EditMessage(mode, user, null);
+        m.docId = docId;
+        return m;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static int[] parse(String[] args) {
+        int[] out = new int[args.length];
+        for (int i = 0; i < args.length; i++) out[i] = Integer.parseInt(args[i]);
+        return out;
+    }
+}
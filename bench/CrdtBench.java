@@ -0,0 +1,123 @@
+import global.crdt.CrdtOp;
+import global.crdt.RgaReplica;
+import global.enums.Mode;
+import global.object.DocumentState;
+import global.object.EditMessage;
+import server.document.DocumentEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// engine=crdt 측정: 문서 크기별 메모리, 불러오기(fromState), 편집, 원격 연산 병합.
+// 같은 크기에서 engine=rope 와 나란히 찍는다.
+// 실행: javac -d out -sourcepath src bench/CrdtBench.java && java -Xmx2g -cp out CrdtBench [글자 수...]
+public class CrdtBench {
+
+    private static final int EDITS = 20_000;
+
+    public static void main(String[] args) {
+        int[] sizes = (args.length == 0) ? new int[]{10_000, 100_000, 1_000_000} : parse(args);
+
+        System.out.printf("%-6s %10s %10s %12s %12s %12s%n", "engine", "chars", "B/char", "load ms", "edit us/op", "merge ms");
+        for (int n : sizes) {
+            String text = randomText(n, new Random(n));
+            for (String engine : new String[]{"rope", "crdt"}) {
+                // 한 번 돌려 JIT 를 데운 뒤 잰다
+                runEngine(engine, text);
+                long[] r = runEngine(engine, text);
+                String merge = String.format("%12s", "-");
+                if (engine.equals("crdt")) {
+                    mergeMs(text);
+                    merge = String.format("%12.1f", mergeMs(text));
+                }
+                System.out.printf("%-6s %10d %10.1f %12.1f %12.2f %s%n", engine, n,
+                        (double) r[0] / n, r[1] / 1e6, r[2] / 1e3 / EDITS, merge);
+            }
+        }
+    }
+
+    // {메모리 bytes, 불러오기 ns, 편집 ns}
+    private static long[] runEngine(String name, String text) {
+        DocumentState state = new DocumentState();
+        state.text = text;
+        state.images = new ArrayList<>();
+
+        long before = usedHeap();
+        long t0 = System.nanoTime();
+        DocumentEngine engine = DocumentEngine.create(name);
+        engine.loadState(state);
+        long load = System.nanoTime() - t0;
+        long bytes = usedHeap() - before;
+
+        Random rnd = new Random(1);
+        int len = text.length();
+        t0 = System.nanoTime();
+        for (int i = 0; i < EDITS; i++) {
+            int at = rnd.nextInt(len + 1);
+            if (i % 3 == 2) {
+                int n = Math.min(1 + rnd.nextInt(4), len - at);
+                engine.apply(edit(Mode.DELETE, at, null, n));
+                len -= n;
+            } else {
+                engine.apply(edit(Mode.INSERT, at, "ab", 2));
+                len += 2;
+            }
+        }
+        long edits = System.nanoTime() - t0;
+        if (engine.getDocument().length() != len) throw new AssertionError("length mismatch");
+        return new long[]{bytes, load, edits};
+    }
+
+    // 같은 상태에서 시작한 두 복제본이 각자 편집한 뒤 상대 연산을 모두 적용하는 시간
+    private static double mergeMs(String text) {
+        DocumentState state = new DocumentState();
+        state.text = text;
+        RgaReplica a = RgaReplica.fromState(state, 1);
+        RgaReplica b = RgaReplica.fromState(state, 2);
+
+        Random rnd = new Random(2);
+        List<CrdtOp> fromA = new ArrayList<>();
+        List<CrdtOp> fromB = new ArrayList<>();
+        for (int i = 0; i < EDITS / 2; i++) {
+            fromA.addAll(a.insert(rnd.nextInt(a.length() + 1), "x"));
+            fromB.addAll(b.insert(rnd.nextInt(b.length() + 1), "y"));
+            if (i % 4 == 3) {
+                fromA.addAll(a.delete(rnd.nextInt(a.length()), 1));
+                fromB.addAll(b.delete(rnd.nextInt(b.length()), 1));
+            }
+        }
+
+        long t0 = System.nanoTime();
+        a.applyAll(fromB);
+        b.applyAll(fromA);
+        double ms = (System.nanoTime() - t0) / 1e6;
+        if (!a.text().equals(b.text())) throw new AssertionError("replicas diverged");
+        return ms;
+    }
+
+    private static EditMessage edit(Mode mode, int offset, String text, int length) {
+        EditMessage m = new EditMessage(mode, "bench", text);
+        m.offset = offset;
+        m.length = length;
+        return m;
+    }
+
+    private static String randomText(int n, Random rnd) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) sb.append(rnd.nextInt(40) == 0 ? '\n' : (char) ('a' + rnd.nextInt(26)));
+        return sb.toString();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static int[] parse(String[] args) {
+        int[] out = new int[args.length];
+        for (int i = 0; i < args.length; i++) out[i] = Integer.parseInt(args[i]);
+        return out;
+    }
+}
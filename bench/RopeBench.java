@@ -0,0 +1,102 @@
+import server.document.Rope;
+
+import java.util.Random;
+
+// Rope 와 예전 방식(StringBuilder) 비교: 1MB / 50MB 문서에 임의 위치 한 글자 삽입/삭제, 스냅샷(toString).
+// 먼저 같은 편집열을 둘 다에 적용해 결과가 같은지 확인한다.
+// 실행: javac -d out -sourcepath src bench/RopeBench.java && java -Xmx4g -cp out RopeBench [MB...]
+public class RopeBench {
+
+    private static final int ROUNDS = 5;
+    private static final int WARMUP = 2;
+    private static final int ROPE_EDITS = 100_000;
+
+    // 한 번 돌린 결과: 편집 시간과 그 뒤 스냅샷 시간
+    private static final class Result {
+        final String text;
+        final long editNanos;
+        final long snapshotNanos;
+
+        Result(String text, long editNanos, long snapshotNanos) {
+            this.text = text;
+            this.editNanos = editNanos;
+            this.snapshotNanos = snapshotNanos;
+        }
+    }
+
+    public static void main(String[] args) {
+        int[] sizesMb = (args.length == 0) ? new int[]{1, 50} : parse(args);
+
+        System.out.printf("%-14s %6s %8s %14s %14s%n", "impl", "MB", "edits", "us/edit", "snapshot ms");
+        for (int mb : sizesMb) {
+            String text = randomText(mb * 1024 * 1024, new Random(mb));
+            // StringBuilder 편집은 O(n) 이라 큰 문서에서는 편집 수를 줄인다
+            int builderEdits = Math.max(200, 20_000 / mb);
+
+            if (!edit(Rope.of(text), builderEdits, mb).text.equals(edit(new StringBuilder(text), builderEdits, mb).text)) {
+                throw new AssertionError("Rope and StringBuilder differ at " + mb + "MB");
+            }
+
+            double[] rope = new double[2];
+            double[] builder = new double[2];
+            for (int r = 0; r < WARMUP + ROUNDS; r++) {
+                long seed = 31L * r + mb;
+                Result a = edit(Rope.of(text), ROPE_EDITS, seed);
+                Result b = edit(new StringBuilder(text), builderEdits, seed);
+                if (r < WARMUP) continue;
+                rope[0] += a.editNanos / 1e3 / ROPE_EDITS / ROUNDS;
+                rope[1] += a.snapshotNanos / 1e6 / ROUNDS;
+                builder[0] += b.editNanos / 1e3 / builderEdits / ROUNDS;
+                builder[1] += b.snapshotNanos / 1e6 / ROUNDS;
+            }
+            System.out.printf("%-14s %6d %8d %14.2f %14.2f%n", "Rope", mb, ROPE_EDITS, rope[0], rope[1]);
+            System.out.printf("%-14s %6d %8d %14.2f %14.2f%n", "StringBuilder", mb, builderEdits, builder[0], builder[1]);
+        }
+    }
+
+    private static Result edit(Rope rope, int edits, long seed) {
+        Random rnd = new Random(seed);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < edits; i++) {
+            int len = rope.length();
+            if ((i & 1) == 0 || len == 0) {
+                rope = rope.insert(rnd.nextInt(len + 1), "x");
+            } else {
+                int at = rnd.nextInt(len);
+                rope = rope.delete(at, at + 1);
+            }
+        }
+        long t1 = System.nanoTime();
+        String text = rope.toString();
+        return new Result(text, t1 - t0, System.nanoTime() - t1);
+    }
+
+    private static Result edit(StringBuilder b, int edits, long seed) {
+        Random rnd = new Random(seed);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < edits; i++) {
+            int len = b.length();
+            if ((i & 1) == 0 || len == 0) {
+                b.insert(rnd.nextInt(len + 1), "x");
+            } else {
+                int at = rnd.nextInt(len);
+                b.delete(at, at + 1);
+            }
+        }
+        long t1 = System.nanoTime();
+        String text = b.toString();
+        return new Result(text, t1 - t0, System.nanoTime() - t1);
+    }
+
+    private static String randomText(int n, Random rnd) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) sb.append(rnd.nextInt(40) == 0 ? '\n' : (char) ('a' + rnd.nextInt(26)));
+        return sb.toString();
+    }
+
+    private static int[] parse(String[] args) {
+        int[] out = new int[args.length];
+        for (int i = 0; i < args.length; i++) out[i] = Integer.parseInt(args[i]);
+        return out;
+    }
+}
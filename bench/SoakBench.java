@@ -0,0 +1,202 @@
+import global.codec.MessageCodec;
+import global.config.ConfigReader;
+import global.enums.Mode;
+import global.object.EditMessage;
+import server.core.Server;
+import server.ui.ServerDashboardUI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 장시간 편집에서 힙과 연결 버퍼가 평평하게 유지되는지 (user-004).
+// 같은 JVM 에 서버를 띄우고 (서버 대시보드 창이 뜬다) 연결 여러 개가 한 문서에 번갈아 삽입/삭제를 보낸다.
+// 각 연결은 ACK 를 받고 다음 편집을 보내며, 다른 연결의 편집은 브로드캐스트로 받는다.
+// 구간마다 GC 뒤 힙 (클라이언트 쪽 포함) 과 서버가 연결마다 붙잡은 버퍼(getRetainedBytes) 합계를 찍는다.
+// 실행: javac -d out -sourcepath src bench/SoakBench.java && java -cp out SoakBench [편집 수] [연결 수] [key=value...]
+// 서버 설정은 key=value 로 (기본 io=nio, storage.fsync=false)
+public class SoakBench {
+
+    private static final long TIMEOUT_MS = 30_000;
+    private static final int REPORTS = 10;
+
+    // 편집을 보내는 연결 하나: ACK 만 큐에 모으고 나머지(브로드캐스트)는 세기만 한다
+    private static final class Session {
+        final Socket socket;
+        final DataOutputStream out;
+        final DataInputStream in;
+        final LinkedBlockingQueue<EditMessage> control = new LinkedBlockingQueue<>();
+        final AtomicLong received = new AtomicLong();
+
+        Session(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            Thread.ofVirtual().start(this::readLoop);
+        }
+
+        private void readLoop() {
+            try {
+                while (true) {
+                    EditMessage msg = MessageCodec.readFrame(in);
+                    if (msg.mode == Mode.BATCH) {
+                        if (msg.ops != null) for (EditMessage op : msg.ops) received(op);
+                    } else {
+                        received(msg);
+                    }
+                }
+            } catch (Exception e) {
+                // 종료
+            }
+        }
+
+        private void received(EditMessage msg) {
+            if (msg.mode == Mode.INSERT || msg.mode == Mode.DELETE) {
+                received.incrementAndGet();
+                return;
+            }
+            control.add(msg);
+        }
+
+        synchronized void send(EditMessage msg) throws IOException {
+            MessageCodec.writeFrame(out, msg);
+        }
+
+        EditMessage await(Mode mode) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT_MS;
+            while (System.currentTimeMillis() < end) {
+                EditMessage m = control.poll(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (m == null) break;
+                if (m.mode == mode) return m;
+            }
+            throw new IllegalStateException("timeout waiting for " + mode);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long edits = (args.length > 0) ? Long.parseLong(args[0]) : 1_000_000;
+        int n = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+        Map<String, String> opt = new HashMap<>();
+        opt.put("io", "nio");
+        opt.put("storage.fsync", "false");
+        for (int i = 2; i < args.length; i++) {
+            String[] kv = args[i].split("=", 2);
+            if (kv.length == 2) opt.put(kv[0], kv[1]);
+        }
+
+        int port = 20000 + new Random().nextInt(20000);
+        Server server = new Server(new ConfigReader.ServerConfig("127.0.0.1", port, opt), new ServerDashboardUI());
+        Thread.ofPlatform().daemon(true).start(server::startServer);
+        Thread.sleep(500);
+
+        List<Session> sessions = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) sessions.add(new Session(port));
+            for (Session s : sessions) s.await(Mode.DOC_LIST);
+
+            Session first = sessions.get(0);
+            EditMessage create = message(Mode.DOC_CREATE, "w0", null);
+            create.docTitle = "soak-" + port;
+            first.send(create);
+            EditMessage sync = first.await(Mode.FULL_SYNC);
+            String docId = sync.docId;
+            long[] versions = new long[n];
+            versions[0] = sync.version;
+            for (int i = 1; i < n; i++) sessions.get(i).send(message(Mode.DOC_OPEN, "w" + i, docId));
+            for (int i = 1; i < n; i++) versions[i] = sessions.get(i).await(Mode.FULL_SYNC).version;
+
+            System.out.printf("io=%s, %d connections, %d edits%n", opt.get("io"), n, edits);
+            System.out.printf("%10s %10s %12s %14s %14s%n", "edits", "sec", "edits/s", "heap MB", "conn buf KB");
+            report(server, 0, 0, 0);
+
+            long perConn = edits / n;
+            long step = Math.max(1, perConn / REPORTS);
+            long t0 = System.nanoTime();
+            long tLast = t0;
+            for (long done = 0; done < perConn; ) {
+                long until = Math.min(perConn, done + step);
+                // 구간마다 연결들이 동시에 step 개씩 보내고, 모두 끝나면 측정한다
+                List<Thread> writers = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    int idx = i;
+                    long from = done;
+                    writers.add(Thread.ofVirtual().start(() -> drive(sessions.get(idx), "w" + idx, docId,
+                            versions, idx, from, until)));
+                }
+                for (Thread w : writers) w.join();
+                done = until;
+
+                long now = System.nanoTime();
+                report(server, done * n, (now - t0) / 1e9, step * n / ((now - tLast) / 1e9));
+                tLast = now;
+            }
+
+            long received = 0;
+            for (Session s : sessions) received += s.received.get();
+            System.out.printf("broadcast edits received: %d%n", received);
+
+            first.send(message(Mode.DOC_DELETE, "w0", docId));
+        } finally {
+            for (Session s : sessions) s.close();
+            server.disconnect();
+        }
+        System.exit(0);
+    }
+
+    // 짝수 번째는 맨 앞에 한 글자 삽입, 홀수 번째는 맨 앞 한 글자 삭제 (문서 크기가 자라지 않게)
+    private static void drive(Session s, String user, String docId, long[] versions, int idx, long from, long until) {
+        try {
+            long version = versions[idx];
+            for (long k = from; k < until; k++) {
+                EditMessage edit;
+                if ((k & 1) == 0) {
+                    edit = message(Mode.INSERT, user, docId);
+                    edit.text = "x";
+                } else {
+                    edit = message(Mode.DELETE, user, docId);
+                }
+                edit.offset = 0;
+                edit.length = 1;
+                edit.version = version;
+                s.send(edit);
+                version = s.await(Mode.ACK).version;
+            }
+            versions[idx] = version;
+        } catch (Exception e) {
+            throw new IllegalStateException(user + ": " + e, e);
+        }
+    }
+
+    private static void report(Server server, long edits, double sec, double rate) {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        long heap = rt.totalMemory() - rt.freeMemory();
+        System.out.printf("%10d %10.1f %12.0f %14.1f %14d%n", edits, sec, rate, heap / (1024.0 * 1024),
+                server.retainedBytes() / 1024);
+    }
+
+    private static EditMessage message(Mode mode, String user, String docId) {
+        EditMessage m = new EditMessage(mode, user, null);
+        m.docId = docId;
+        return m;
+    }
+}
@@ -0,0 +1,213 @@
+package client.controller;
+
+import global.enums.Mode;
+import global.object.EditMessage;
+
+import javax.swing.*;
+import java.util.function.Consumer;
+
+// 로컬 INSERT/DELETE를 짧은 창(window) 동안 모아 하나의 연산으로 보낸다.
+// - 이어지는 타이핑(삽입 끝 위치에서 계속 삽입), 연속 Backspace/Delete 는 합친다.
+// - 방금 입력한 글자를 지우는 경우는 보내지 않고 대기 중인 삽입에서 뺀다.
+// - 창이 끝나거나, 캐럿이 다른 곳으로 튀거나, 다른 종류의 메시지를 보내기 전에 flush 한다.
+// 대기 중인 편집은 로컬 문서에는 이미 반영되어 있고 서버에는 아직 없으므로,
+// 그 사이 도착한 원격 편집은 transformRemote* 로 로컬 좌표로 바꿔 적용한다.
+public class EditCoalescer {
+
+    private final String userId;
+    private final Consumer<EditMessage> sender;
+    private final int windowMs;
+    private final boolean immediate; // window <= 0 이면 합치지 않고 바로 보낸다
+    private Timer timer;              // 첫 창에서 만든다
+
+    // ===== 대기 중인 연산 (없으면 pendingMode == null) =====
+    private Mode pendingMode;
+    private String pendingDocId;
+    private int pendingOffset;
+    private final StringBuilder pendingText = new StringBuilder(); // INSERT
+    private int pendingLength;                                     // DELETE
+
+    public EditCoalescer(String userId, int windowMs, Consumer<EditMessage> sender) {
+        this.userId = userId;
+        this.sender = sender;
+        this.windowMs = Math.max(1, windowMs);
+        this.immediate = windowMs <= 0;
+    }
+
+    // ===== 로컬 편집 =====
+    public synchronized void offerInsert(String docId, int offset, String text) {
+        if (text == null || text.isEmpty()) return;
+
+        if (pendingMode == Mode.INSERT && docId.equals(pendingDocId)
+                && offset == pendingOffset + pendingText.length()) {
+            pendingText.append(text);
+            return;
+        }
+
+        flush();
+        pendingMode = Mode.INSERT;
+        pendingDocId = docId;
+        pendingOffset = offset;
+        pendingText.append(text);
+        startWindow();
+    }
+
+    public synchronized void offerDelete(String docId, int offset, int length) {
+        if (length <= 0) return;
+
+        if (pendingMode == Mode.INSERT && docId.equals(pendingDocId)
+                && offset >= pendingOffset && offset + length <= pendingOffset + pendingText.length()) {
+            // 아직 안 보낸 글자를 지우는 경우: 서버에 보낼 필요 없음
+            int from = offset - pendingOffset;
+            pendingText.delete(from, from + length);
+            if (pendingText.length() == 0) clear();
+            return;
+        }
+
+        if (pendingMode == Mode.DELETE && docId.equals(pendingDocId)) {
+            if (offset + length == pendingOffset) {      // Backspace 연속
+                pendingOffset = offset;
+                pendingLength += length;
+                return;
+            }
+            if (offset == pendingOffset) {               // Delete 키 연속
+                pendingLength += length;
+                return;
+            }
+        }
+
+        flush();
+        pendingMode = Mode.DELETE;
+        pendingDocId = docId;
+        pendingOffset = offset;
+        pendingLength = length;
+        startWindow();
+    }
+
+    // 창은 첫 연산 기준으로 한 번만 시작 (이어 붙여도 연장하지 않아 지연이 window를 넘지 않는다)
+    private void startWindow() {
+        if (immediate) {
+            flush();
+            return;
+        }
+        if (timer == null) {
+            timer = new Timer(windowMs, e -> flush());
+            timer.setRepeats(false);
+        }
+        timer.restart();
+    }
+
+    private void stopWindow() {
+        if (timer != null) timer.stop();
+    }
+
+    // 캐럿이 대기 중인 연산의 끝이 아닌 곳으로 옮겨지면 바로 보낸다
+    public synchronized void onCaretMoved(int dot) {
+        if (pendingMode == Mode.INSERT && dot != pendingOffset + pendingText.length()) flush();
+        else if (pendingMode == Mode.DELETE && dot != pendingOffset) flush();
+    }
+
+    public synchronized void flush() {
+        stopWindow();
+        if (pendingMode == null) return;
+
+        EditMessage msg = new EditMessage(pendingMode, userId, null);
+        msg.docId = pendingDocId;
+        msg.offset = pendingOffset;
+        if (pendingMode == Mode.INSERT) {
+            msg.text = pendingText.toString();
+            msg.length = msg.text.length();
+        } else {
+            msg.length = pendingLength;
+        }
+
+        clear();
+        sender.accept(msg);
+    }
+
+    // 문서 전환/FULL_SYNC: 대기 중인 연산은 더 이상 의미가 없다
+    public synchronized void discard() {
+        stopWindow();
+        clear();
+    }
+
+    private void clear() {
+        pendingMode = null;
+        pendingDocId = null;
+        pendingText.setLength(0);
+        pendingLength = 0;
+    }
+
+    // ===== 원격 편집 좌표 변환 =====
+    // 서버 좌표의 원격 INSERT → 로컬 좌표. 대기 중인 연산 위치도 함께 보정한다.
+    public synchronized int transformRemoteInsert(int offset, int length) {
+        if (pendingMode == Mode.INSERT) {
+            if (offset <= pendingOffset) {
+                pendingOffset += length;
+                return offset;
+            }
+            return offset + pendingText.length();
+        }
+
+        if (pendingMode == Mode.DELETE) {
+            int end = pendingOffset + pendingLength;
+            if (offset <= pendingOffset) {
+                pendingOffset += length;
+                return offset;
+            }
+            if (offset >= end) return offset - pendingLength;
+
+            // 내가 지운 구간 한가운데에 삽입됨: 앞부분 삭제는 지금 보내고 뒷부분만 대기
+            int head = offset - pendingOffset;
+            EditMessage first = new EditMessage(Mode.DELETE, userId, null);
+            first.docId = pendingDocId;
+            first.offset = pendingOffset;
+            first.length = head;
+            sender.accept(first);
+
+            pendingOffset += length;
+            pendingLength -= head;
+            return first.offset;
+        }
+
+        return offset;
+    }
+
+    // 서버 좌표의 원격 DELETE → 로컬에서 지울 구간들 {offset, length, offset, length ...}
+    public synchronized int[] transformRemoteDelete(int offset, int length) {
+        int end = offset + length;
+
+        if (pendingMode == Mode.INSERT) {
+            int ins = pendingText.length();
+            if (end <= pendingOffset) {
+                pendingOffset -= length;
+                return new int[]{offset, length};
+            }
+            if (offset >= pendingOffset) return new int[]{offset + ins, length};
+
+            // 삭제 구간이 내 삽입 지점을 감쌈: 삽입 텍스트는 남기고 양옆만 지운다
+            int before = pendingOffset - offset;
+            pendingOffset = offset;
+            return new int[]{offset, before, offset + ins, length - before};
+        }
+
+        if (pendingMode == Mode.DELETE) {
+            int pEnd = pendingOffset + pendingLength;
+            if (end <= pendingOffset) {
+                pendingOffset -= length;
+                return new int[]{offset, length};
+            }
+            if (offset >= pEnd) return new int[]{offset - pendingLength, length};
+
+            // 같은 글자를 둘 다 지움: 겹치는 부분은 양쪽에서 한 번만 지워지도록 뺀다
+            int overlap = Math.min(end, pEnd) - Math.max(offset, pendingOffset);
+            int localOffset = Math.min(offset, pendingOffset);
+            pendingOffset = localOffset;
+            pendingLength -= overlap;
+            if (pendingLength == 0) discard();
+            return new int[]{localOffset, length - overlap};
+        }
+
+        return new int[]{offset, length};
+    }
+}
@@ -7,12 +7,24 @@ import global.enums.Mode;
 import global.object.DocumentMeta;
 import global.object.EditMessage;
 
+import javax.swing.*;
 import java.util.*;
 
 public class EditorController {
 
     private final Client client;
     private final String userId;
+    private final EditCoalescer coalescer;
+    private final OtSession ot;
+
+    // lock.enforce=true 이면 예전처럼 다른 사람이 잡은 줄은 입력을 막는다.
+    // 기본은 OT로 동시 편집을 합치므로 줄 락은 누가 어디를 편집 중인지 보여주는 용도다.
+    private final boolean enforceLocks;
+    // lock.queue=true(기본): 남이 가진 줄로 가면 서버 대기열에 서고 차례가 오면 넘겨받는다
+    private final boolean queueLocks;
+
+    // lock.debounce.ms: 캐럿 줄이 이만큼 멈춰 있어야 잠금을 옮긴다 (방향키를 누르고 있는 동안은 보내지 않음)
+    private final javax.swing.Timer lockDebounce;
 
     private LobbyUI lobbyUI;
     private EditorMainUI editorUI;
@@ -21,13 +33,20 @@ public class EditorController {
     private volatile String currentDocId = null;
     private final LinkedHashSet<String> myDocIds = new LinkedHashSet<>();
     private List<DocumentMeta> lastDocList = new ArrayList<>();
-    private Integer myLockedLineIndex = null;
 
     private String lastConnStatus = "서버 연결: 끊김";
 
     public EditorController(String userId) {
         this.userId = userId;
         this.client = new Client(this);
+        this.ot = new OtSession(client::send);
+        // coalesce.ms: 로컬 타이핑을 모아 보내는 창 (0 이면 키 입력마다 전송)
+        this.coalescer = new EditCoalescer(userId, client.getConfig().getInt("coalesce.ms", 30), ot::submit);
+        this.enforceLocks = Boolean.parseBoolean(client.getConfig().get("lock.enforce", "false"));
+        this.queueLocks = Boolean.parseBoolean(client.getConfig().get("lock.queue", "true"));
+        this.lockDebounce = new javax.swing.Timer(Math.max(1, client.getConfig().getInt("lock.debounce.ms", 150)),
+                e -> moveLockToCaretLine());
+        this.lockDebounce.setRepeats(false);
     }
 
     public void attachLobby(LobbyUI lobby) {
@@ -58,7 +77,7 @@ public class EditorController {
             editorUI.setController(this);
             editorUI.updateConnectionStatus(lastConnStatus);
 
-            lockController = new LineLockController(client, editorUI, userId);
+            lockController = new LineLockController(client, editorUI, userId, queueLocks);
         }
 
         if (lobbyUI != null) lobbyUI.setVisible(false);
@@ -68,45 +87,53 @@ public class EditorController {
 
     // ===== 문서 명령 =====
     public void requestDocList() {
-        client.send(new EditMessage(Mode.DOC_LIST, userId, null));
+        send(new EditMessage(Mode.DOC_LIST, userId, null));
     }
 
     public void openDocument(String docId) {
         if (docId == null) return;
         EditMessage msg = new EditMessage(Mode.DOC_OPEN, userId, null);
         msg.docId = docId;
-        client.send(msg);
+        send(msg);
     }
 
     public void createDocument(String title) {
         EditMessage msg = new EditMessage(Mode.DOC_CREATE, userId, null);
         msg.docTitle = title;
-        client.send(msg);
+        send(msg);
     }
 
     public void deleteDocument(String docId) {
         EditMessage msg = new EditMessage(Mode.DOC_DELETE, userId, null);
         msg.docId = docId;
+        send(msg);
+    }
+
+    // 다른 메시지는 대기 중인 타이핑을 먼저 보낸 뒤 전송 (순서 보장)
+    private void send(EditMessage msg) {
+        coalescer.flush();
         client.send(msg);
     }
 
+    // 편집은 OT 세션을 거친다 (기준 버전 부여, ACK 전에는 모아 두기)
+    private void sendEdit(EditMessage msg) {
+        coalescer.flush();
+        ot.submit(msg);
+    }
+
     // ===== 로컬 편집 이벤트 =====
     public void onTextInserted(int offset, String text) {
         if (currentDocId == null) return;
-        EditMessage msg = new EditMessage(Mode.INSERT, userId, text);
-        msg.docId = currentDocId;
-        msg.offset = offset;
-        msg.length = (text == null ? 0 : text.length());
-        client.send(msg);
+        coalescer.offerInsert(currentDocId, offset, text);
     }
 
     public void onTextDeleted(int offset, int length) {
         if (currentDocId == null) return;
-        EditMessage msg = new EditMessage(Mode.DELETE, userId, null);
-        msg.docId = currentDocId;
-        msg.offset = offset;
-        msg.length = length;
-        client.send(msg);
+        coalescer.offerDelete(currentDocId, offset, length);
+    }
+
+    public void onCaretMoved(int dot) {
+        coalescer.onCaretMoved(dot);
     }
 
     public void onLocalImageInserted(int blockId, int offset, int w, int h, byte[] data) {
@@ -119,7 +146,7 @@ public class EditorController {
         msg.width = w;
         msg.height = h;
         msg.payload = data;
-        client.send(msg);
+        sendEdit(msg);
     }
 
     public void onLocalImageResized(int blockId, int w, int h) {
@@ -129,35 +156,41 @@ public class EditorController {
         msg.blockId = blockId;
         msg.width = w;
         msg.height = h;
-        client.send(msg);
+        sendEdit(msg);
     }
 
-    public void onLocalImageMoved(int blockId, int newOffset) {
+    // oldOffset: 이동 전 위치, newOffset: 이동 전 문서 기준 목표 위치
+    public void onLocalImageMoved(int blockId, int oldOffset, int newOffset) {
         if (currentDocId == null) return;
         EditMessage msg = new EditMessage(Mode.IMAGE_MOVE, userId, null);
         msg.docId = currentDocId;
         msg.blockId = blockId;
+        msg.offset = oldOffset;
         msg.newOffset = newOffset;
-        client.send(msg);
+        sendEdit(msg);
     }
 
     // ===== 라인 락 =====
-    public void onLineSwitched(int fromLine, int toLine) {
+    // 키 입력으로 캐럿이 움직였을 수 있음: 멈출 때까지 미뤘다가 LOCK_MOVE 하나로 보낸다
+    public void onCaretLineMaybeChanged() {
         if (currentDocId == null || lockController == null) return;
+        lockDebounce.restart();
+    }
 
-        if (lockController.isLockedByMe(fromLine)) lockController.unlock(currentDocId, fromLine);
+    private void moveLockToCaretLine() {
+        if (currentDocId == null || lockController == null || editorUI == null) return;
 
-        if (lockController.isLockedByOther(toLine) && editorUI != null) {
-            editorUI.showLineLockedDialog(toLine);
-            return;
+        int line = editorUI.getLineIndexFromCaretPosition();
+        boolean lockedByOther = lockController.isLockedByOther(line);
+        // 대기 모드면 거절 대신 상태 표시줄에 대기 순번이 뜬다
+        if (lockController.moveTo(currentDocId, line) && lockedByOther && enforceLocks && !queueLocks) {
+            editorUI.showLineLockedDialog(line);
         }
-
-        if (!lockController.isLockedByMe(toLine)) lockController.requestLock(currentDocId, toLine);
-        myLockedLineIndex = toLine;
     }
 
+    // 입력을 막아야 하는 줄인지 (lock.enforce 일 때만)
     public boolean isLineLockedByOther(int lineIndex) {
-        return lockController != null && lockController.isLockedByOther(lineIndex);
+        return enforceLocks && lockController != null && lockController.isLockedByOther(lineIndex);
     }
 
     // ===== 서버 이벤트 =====
@@ -167,6 +200,28 @@ public class EditorController {
         if (editorUI != null) editorUI.updateConnectionStatus(lastConnStatus);
     }
 
+    // 원격 묶음 적용 시작/끝 (EDT). 그 사이의 문서 변경은 로컬 편집으로 보내지 않는다
+    public void beginRemoteBatch() {
+        if (editorUI != null) editorUI.beginRemoteBatch();
+    }
+
+    public void endRemoteBatch() {
+        if (editorUI != null) editorUI.endRemoteBatch();
+    }
+
+    // 송신 큐가 밀리면 상태 표시줄로 알린다 (입력은 막지 않는다). 송신 스레드에서도 불린다
+    public void onSendBackpressure(boolean busy) {
+        SwingUtilities.invokeLater(() -> {
+            if (!busy) {
+                onConnectionStatus(null);
+                return;
+            }
+            String text = "전송 지연 중 (" + client.sendStats() + ")";
+            if (lobbyUI != null) lobbyUI.updateConnectionStatus(text);
+            if (editorUI != null) editorUI.updateConnectionStatus(text);
+        });
+    }
+
     public void onRemoteDocList(List<DocumentMeta> docs) {
         lastDocList = (docs == null) ? new ArrayList<>() : new ArrayList<>(docs);
 
@@ -180,7 +235,9 @@ public class EditorController {
         myDocIds.removeIf(id -> !alive.contains(id));
     }
 
-    public void onRemoteFullSync(String docId, String title, String text) {
+    public void onRemoteFullSync(String docId, String title, String text, long version) {
+        coalescer.discard();
+        ot.reset(docId, version);
         currentDocId = docId;
         if (docId != null) myDocIds.add(docId);
         if (lobbyUI != null) lobbyUI.setMyDocs(filterMyDocs(lastDocList));
@@ -194,29 +251,45 @@ public class EditorController {
     }
     public void onRemoteSyncEnd(String docId) { }
 
-    public void onRemoteInsert(String docId, int offset, String text) {
+    public void onRemoteAck(String docId, long version) {
         if (!isCurrent(docId)) return;
-        editorUI.applyInsert(offset, text);
+        ot.onAck(docId, version);
     }
 
-    public void onRemoteDelete(String docId, int offset, int length) {
-        if (!isCurrent(docId)) return;
-        editorUI.applyDelete(offset, length);
+    // 원격 편집: 서버 좌표 -> (ACK 대기/보류 중인 편집 기준 OT 변환) -> (아직 안 보낸 타이핑 보정) -> 적용
+    public void onRemoteEdit(EditMessage msg) {
+        if (!isCurrent(msg.docId)) return;
+
+        // 이미지 이동은 타이핑 보정 대상이 아니므로 대기 중인 타이핑을 먼저 OT 쪽으로 넘긴다
+        if (msg.mode == Mode.IMAGE_MOVE) coalescer.flush();
+
+        for (EditMessage r : ot.onRemote(msg)) {
+            switch (r.mode) {
+                case INSERT -> applyRemoteInsert(r.offset, r.text);
+                case DELETE -> applyRemoteDelete(r.offset, r.length);
+                case IMAGE_INSERT -> applyRemoteImageInsert(r.blockId, r.offset, r.width, r.height, r.payload);
+                case IMAGE_RESIZE -> editorUI.applyImageResize(r.blockId, r.width, r.height);
+                case IMAGE_MOVE -> editorUI.applyImageMove(r.blockId, r.newOffset);
+                default -> { }
+            }
+        }
     }
 
-    public void onRemoteImageInsert(String docId, int id, int offset, int w, int h, byte[] data) {
-        if (!isCurrent(docId)) return;
-        editorUI.applyImageInsert(id, offset, w, h, data);
+    private void applyRemoteInsert(int offset, String text) {
+        int local = coalescer.transformRemoteInsert(offset, text == null ? 0 : text.length());
+        editorUI.applyInsert(local, text);
     }
 
-    public void onRemoteImageResize(String docId, int id, int w, int h) {
-        if (!isCurrent(docId)) return;
-        editorUI.applyImageResize(id, w, h);
+    private void applyRemoteDelete(int offset, int length) {
+        int[] ranges = coalescer.transformRemoteDelete(offset, length);
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i + 1] > 0) editorUI.applyDelete(ranges[i], ranges[i + 1]);
+        }
     }
 
-    public void onRemoteImageMove(String docId, int id, int newOffset) {
-        if (!isCurrent(docId)) return;
-        editorUI.applyImageMove(id, newOffset);
+    private void applyRemoteImageInsert(int id, int offset, int w, int h, byte[] data) {
+        int local = coalescer.transformRemoteInsert(offset, 1);
+        editorUI.applyImageInsert(id, local, w, h, data);
     }
 
     public void onRemoteLock(int lineIndex, String ownerId) {
@@ -227,6 +300,13 @@ public class EditorController {
         if (lockController != null) lockController.onRemoteUnlock(lineIndex, ownerId);
     }
 
+    // 문서 잠금 전체 (스냅샷 직후, 잠긴 줄이 편집으로 옮겨졌을 때)
+    public void onRemoteLockState(String docId, List<EditMessage> ranges) {
+        if (!isCurrent(docId) || lockController == null) return;
+
+        lockController.onLockState(ranges);
+    }
+
     public void onRemoteDocDeleted(String deletedDocId) {
         if (deletedDocId == null) return;
         myDocIds.remove(deletedDocId);
@@ -240,6 +320,7 @@ public class EditorController {
     }
 
     public void onConnectionLost() {
+        client.disconnect();
         onConnectionStatus("서버 연결 끊김");
     }
 
@@ -247,6 +328,7 @@ public class EditorController {
     public void backToLobby() {
         sendDocLeave();
         unlockMyLineIfNeeded();
+        lockDebounce.stop();
 
         currentDocId = null;
 
@@ -268,7 +350,7 @@ public class EditorController {
         if (currentDocId == null) return;
         EditMessage msg = new EditMessage(Mode.DOC_LEAVE, userId, null);
         msg.docId = currentDocId;
-        client.send(msg);
+        send(msg);
     }
 
     private boolean isCurrent(String docId) {
@@ -276,14 +358,10 @@ public class EditorController {
     }
 
     private void unlockMyLineIfNeeded() {
-        if (myLockedLineIndex == null || lockController == null || currentDocId == null) {
-            myLockedLineIndex = null;
-            return;
-        }
-        if (lockController.isLockedByMe(myLockedLineIndex)) {
-            lockController.unlock(currentDocId, myLockedLineIndex);
-        }
-        myLockedLineIndex = null;
+        if (lockController == null || currentDocId == null) return;
+
+        Integer held = lockController.heldLine();
+        if (held != null) lockController.unlock(currentDocId, held);
     }
 
     public void addMyDoc(String docId) {
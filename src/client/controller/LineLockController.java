@@ -5,6 +5,7 @@ import client.ui.EditorMainUI;
 import global.enums.Mode;
 import global.object.EditMessage;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -13,24 +14,46 @@ public class LineLockController {
     private final Client client;
     private final EditorMainUI ui;
     private final String userId;
+    // 남이 가진 줄이면 서버 대기열에 선다 (풀리면 서버가 넘겨준다). false 면 예전처럼 거절만
+    private final boolean queue;
 
     // lineIndex -> ownerUserId
     private final Map<Integer, String> ownerByLine = new ConcurrentHashMap<>();
 
-    public LineLockController(Client client, EditorMainUI ui, String userId) {
+    // 보냈지만 아직 LOCK_STATE 로 결과를 못 본 LOCK_MOVE 대상 줄 (같은 줄을 거듭 요청하지 않는다)
+    private Integer requestedLine = null;
+
+    // 내가 기다리는 줄 (LOCK_STATE 의 대기자 항목에서)
+    private Integer waitingLine = null;
+
+    public LineLockController(Client client, EditorMainUI ui, String userId, boolean queue) {
         this.client = client;
         this.ui = ui;
         this.userId = userId;
+        this.queue = queue;
     }
 
     // ===== 송신 =====
-    public void requestLock(String docId, int lineIndex) {
-        if (docId == null) return;
-        EditMessage msg = new EditMessage(Mode.LOCK, userId, null);
+    // 내 잠금을 lineIndex 로 옮긴다 (이전 줄 해제는 서버가 같은 요청에서 처리).
+    // 이미 가진/기다리는 줄이거나 같은 줄 요청의 응답을 기다리는 중이면 보내지 않는다. 반환: 보냈는지
+    public boolean moveTo(String docId, int lineIndex) {
+        if (docId == null || lineIndex < 0) return false;
+
+        Integer held = heldLine();
+        if (held != null && held == lineIndex) {
+            requestedLine = null;
+            return false;
+        }
+        if (requestedLine != null && requestedLine == lineIndex) return false;
+        if (waitingLine != null && waitingLine == lineIndex) return false;
+
+        requestedLine = lineIndex;
+        EditMessage msg = new EditMessage(Mode.LOCK_MOVE, userId, null);
         msg.docId = docId;
         msg.blockId = lineIndex;
-        msg.userId = userId;
+        msg.length = queue ? 1 : 0;
         client.send(msg);
+        return true;
     }
 
     public void unlock(String docId, int lineIndex) {
@@ -53,6 +76,14 @@ public class LineLockController {
         return userId.equals(owner);
     }
 
+    // 내가 가진 줄 (없으면 null)
+    public Integer heldLine() {
+        for (Map.Entry<Integer, String> e : ownerByLine.entrySet()) {
+            if (userId.equals(e.getValue())) return e.getKey();
+        }
+        return null;
+    }
+
     // ===== 서버 이벤트 반영 =====
     public void onRemoteLock(int lineIndex, String ownerId) {
         if (ownerId == null) return;
@@ -72,8 +103,46 @@ public class LineLockController {
         ui.unlockLine(lineIndex, ownerId);
     }
 
+    // 서버 잠금 상태로 통째로 교체. ranges: LOCK(userId=소유자, blockId=시작 줄, length=줄 수),
+    // LOCK_MOVE(userId=대기자, blockId=기다리는 줄, length=순번). 반환: 내가 가진 줄 (없으면 null)
+    public Integer onLockState(List<EditMessage> ranges) {
+        ownerByLine.clear();
+        ui.clearAllLineHighlights();
+        waitingLine = null;
+        int waitingPosition = 0;
+
+        Integer mine = null;
+        for (EditMessage r : (ranges == null) ? List.<EditMessage>of() : ranges) {
+            if (r.userId == null) continue;
+            if (r.mode == Mode.LOCK_MOVE) {
+                if (userId.equals(r.userId)) {
+                    waitingLine = r.blockId;
+                    waitingPosition = r.length;
+                }
+                continue;
+            }
+            for (int line = r.blockId; line < r.blockId + Math.max(1, r.length); line++) {
+                ownerByLine.put(line, r.userId);
+                if (userId.equals(r.userId)) {
+                    if (mine == null) mine = line;
+                } else {
+                    ui.lockLine(line, r.userId);
+                }
+            }
+        }
+        // 요청한 줄의 주인이 정해졌으면 (나든 남이든) 결과를 본 것
+        if (requestedLine != null && ownerByLine.containsKey(requestedLine)) requestedLine = null;
+
+        if (waitingLine != null) ui.showLockWait(waitingLine, waitingPosition);
+        else ui.showLockWait(-1, 0);
+        return mine;
+    }
+
     public void resetAllLocks() {
         ownerByLine.clear();
+        requestedLine = null;
+        waitingLine = null;
+        ui.showLockWait(-1, 0);
         ui.clearAllLineHighlights();
     }
 }
@@ -0,0 +1,96 @@
+package client.controller;
+
+import global.enums.Mode;
+import global.object.EditMessage;
+import global.ot.OpTransform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// 클라이언트 쪽 OT 상태. 로컬 편집은 문서에 바로 반영(낙관적)하고 서버에는 순서대로 하나씩 보낸다.
+// - inflight: 보냈고 ACK를 기다리는 편집 (한 번에 한 묶음만)
+// - waiting : ACK 전에 생긴 편집. ACK가 오면 한 묶음(BATCH)으로 보낸다
+// 원격 편집은 inflight -> waiting 순으로 변환해 로컬 좌표로 바꾼다 (서버는 이들을 원격 편집 뒤에 놓는다).
+// EDT에서만 호출된다.
+public class OtSession {
+
+    private final Consumer<EditMessage> sender;
+
+    private String docId;
+    private long revision = 0;                 // 마지막으로 반영한 서버 버전
+    private List<EditMessage> inflight = null; // null 이면 ACK 대기 없음
+    private List<EditMessage> waiting = new ArrayList<>();
+
+    public OtSession(Consumer<EditMessage> sender) {
+        this.sender = sender;
+    }
+
+    // FULL_SYNC: 스냅샷이 기준. 보내지 못한 편집은 스냅샷 이전 것이므로 버린다 (서버도 버린다)
+    public void reset(String docId, long revision) {
+        this.docId = docId;
+        this.revision = revision;
+        this.inflight = null;
+        this.waiting = new ArrayList<>();
+    }
+
+    public long getRevision() { return revision; }
+
+    public int pendingCount() {
+        return (inflight == null ? 0 : inflight.size()) + waiting.size();
+    }
+
+    // ===== 로컬 편집 =====
+    public void submit(EditMessage op) {
+        if (op == null || docId == null || !docId.equals(op.docId)) return;
+
+        if (inflight == null) sendNow(List.of(op));
+        else waiting.add(op);
+    }
+
+    private void sendNow(List<EditMessage> ops) {
+        inflight = new ArrayList<>(ops);
+        for (EditMessage op : inflight) op.version = revision;
+
+        if (inflight.size() == 1) {
+            sender.accept(inflight.get(0));
+        } else {
+            EditMessage batch = new EditMessage(Mode.BATCH, null, null);
+            batch.ops = new ArrayList<>(inflight);
+            sender.accept(batch);
+        }
+    }
+
+    // ===== 서버 이벤트 =====
+    public void onAck(String ackDocId, long version) {
+        if (inflight == null || docId == null || !docId.equals(ackDocId)) return;
+
+        revision = version;
+        inflight = null;
+        if (!waiting.isEmpty()) {
+            List<EditMessage> next = waiting;
+            waiting = new ArrayList<>();
+            sendNow(next);
+        }
+    }
+
+    // 서버 편집 -> 지금 로컬 문서에 적용할 편집들 (대기 중인 로컬 편집도 함께 변환된다)
+    public List<EditMessage> onRemote(EditMessage msg) {
+        // 스냅샷에 딸린 메시지(같은 버전)나 이미 반영한 버전은 변환하지 않는다
+        if (msg.version <= revision) return List.of(msg);
+        revision = msg.version;
+
+        List<EditMessage> remote = List.of(msg);
+        if (inflight != null && !inflight.isEmpty()) {
+            OpTransform.Pair<EditMessage> t = OpTransform.transform(inflight, remote, true);
+            inflight = new ArrayList<>(t.a);
+            remote = t.b;
+        }
+        if (!waiting.isEmpty()) {
+            OpTransform.Pair<EditMessage> t = OpTransform.transform(waiting, remote, true);
+            waiting = new ArrayList<>(t.a);
+            remote = t.b;
+        }
+        return remote;
+    }
+}
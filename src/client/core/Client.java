@@ -9,12 +9,14 @@ import java.net.Socket;
 
 public class Client {
 
+    private final ConfigReader.ServerConfig config;
     private final String serverIp;
     private final int serverPort;
 
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private ClientSender sender;
 
     private final EditorController controller;
     private volatile boolean connected = false;
@@ -22,7 +24,7 @@ public class Client {
     public Client(EditorController controller) {
         this.controller = controller;
 
-        ConfigReader.ServerConfig config = ConfigReader.load("server.txt");
+        this.config = ConfigReader.load("server.txt");
         this.serverIp = config.ip;
         this.serverPort = config.port;
     }
@@ -32,9 +34,19 @@ public class Client {
             try {
                 socket = new Socket(serverIp, serverPort);
 
-                out = new ObjectOutputStream(socket.getOutputStream());
-                out.flush();
-                in = new ObjectInputStream(socket.getInputStream());
+                socket.setTcpNoDelay(true);
+
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+                // 송신 스레드: EDT는 큐에 넣기만 한다
+                sender = new ClientSender(out,
+                        config.getInt("send.high.count", 256),
+                        config.getInt("send.high.bytes", 4 * 1024 * 1024),
+                        config.getInt("send.max.count", 4096),
+                        config.getInt("send.max.bytes", 64 * 1024 * 1024),
+                        controller::onSendBackpressure);
+                sender.start();
 
                 connected = true;
                 controller.onConnectionStatus("서버 연결 완료");
@@ -52,11 +64,37 @@ public class Client {
         }).start();
     }
 
+    public ConfigReader.ServerConfig getConfig() {
+        return config;
+    }
+
+    // 어느 스레드에서 불러도 막히지 않는다. 실제 전송은 ClientSender가 순서대로 처리.
+    // 송신 큐가 넘쳐 닫혔으면 연결을 끊는다 (수신 스레드가 끊김을 알린다)
     public void send(EditMessage msg) {
         if (!connected || msg == null) return;
+        if (!sender.enqueue(msg) && sender.isClosed()) disconnect();
+    }
+
+    // 송신 스레드를 멈추고 소켓을 닫는다. 여러 번 불러도 된다
+    public void disconnect() {
+        connected = false;
+        ClientSender s = sender;
+        if (s != null) s.close();
+
+        Socket sock = socket;
+        if (sock == null) return;
         try {
-            out.writeObject(msg);
-            out.flush();
-        } catch (Exception ignored) {}
+            sock.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // 보낸 메시지가 큐에서 소켓까지 걸린 시간 (평균/최대 ms)
+    public String sendStats() {
+        ClientSender s = sender;
+        if (s == null) return "";
+        return "전송 대기 " + s.queuedCount()
+                + " | 평균 " + s.averageLatencyMillis() + "ms"
+                + " | 최대 " + s.maxLatencyMillis() + "ms";
     }
 }
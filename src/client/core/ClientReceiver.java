@@ -1,16 +1,26 @@
 package client.core;
 
 import client.controller.EditorController;
+import global.codec.MessageCodec;
+import global.enums.Mode;
 import global.object.EditMessage;
 
-import java.io.ObjectInputStream;
+import javax.swing.*;
+import java.io.DataInputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+// 소켓에서 프레임을 읽어 수신함에 넣기만 하고, 적용은 EDT에서 한꺼번에 한다.
+// 프레임마다 invokeLater를 최대 한 번 예약하고, 실행될 때 그때까지 쌓인 것을 모두 처리한다.
 public class ClientReceiver extends Thread {
 
-    private final ObjectInputStream in;
+    private final DataInputStream in;
     private final EditorController controller;
 
-    public ClientReceiver(ObjectInputStream in, EditorController controller) {
+    private final ConcurrentLinkedQueue<EditMessage> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    public ClientReceiver(DataInputStream in, EditorController controller) {
         this.in = in;
         this.controller = controller;
     }
@@ -19,25 +29,56 @@ public class ClientReceiver extends Thread {
     public void run() {
         try {
             while (true) {
-                EditMessage msg = (EditMessage) in.readObject();
-
-                switch (msg.mode) {
-                    case DOC_LIST -> controller.onRemoteDocList(msg.docs);
-                    case FULL_SYNC -> controller.onRemoteFullSync(msg.docId, msg.docTitle, msg.text);
-                    case SYNC_END -> controller.onRemoteSyncEnd(msg.docId);
-                    case INSERT -> controller.onRemoteInsert(msg.docId, msg.offset, msg.text);
-                    case DELETE -> controller.onRemoteDelete(msg.docId, msg.offset, msg.length);
-                    case IMAGE_INSERT -> controller.onRemoteImageInsert(msg.docId, msg.blockId, msg.offset, msg.width, msg.height, msg.payload);
-                    case IMAGE_RESIZE -> controller.onRemoteImageResize(msg.docId, msg.blockId, msg.width, msg.height);
-                    case IMAGE_MOVE -> controller.onRemoteImageMove(msg.docId, msg.blockId, msg.newOffset);
-                    case LOCK -> controller.onRemoteLock(msg.blockId, msg.userId);
-                    case UNLOCK -> controller.onRemoteUnlock(msg.blockId, msg.userId);
-                    case DOC_DELETED -> controller.onRemoteDocDeleted(msg.docId);
-                    default -> { /* JOIN/LEAVE 등은 무시 */ }
+                EditMessage msg = MessageCodec.readFrame(in);
+
+                if (msg.mode == Mode.BATCH) {
+                    if (msg.ops != null) inbox.addAll(msg.ops);
+                } else {
+                    inbox.offer(msg);
+                }
+
+                if (drainScheduled.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(this::drain);
                 }
             }
         } catch (Exception e) {
-            controller.onConnectionLost();
+            // 남은 수신분이 먼저 적용되도록 같은 EDT 큐 뒤에 넣는다
+            SwingUtilities.invokeLater(controller::onConnectionLost);
+        }
+    }
+
+    // EDT: 쌓인 원격 메시지를 한 번에 적용 (이벤트 무시/레이아웃은 묶음당 한 번)
+    private void drain() {
+        drainScheduled.set(false);
+
+        EditMessage msg = inbox.poll();
+        if (msg == null) return;
+
+        controller.beginRemoteBatch();
+        try {
+            do {
+                dispatch(msg);
+            } while ((msg = inbox.poll()) != null);
+        } finally {
+            controller.endRemoteBatch();
+        }
+    }
+
+    private void dispatch(EditMessage msg) {
+        switch (msg.mode) {
+            case DOC_LIST -> controller.onRemoteDocList(msg.docs);
+            case FULL_SYNC -> controller.onRemoteFullSync(msg.docId, msg.docTitle, msg.text, msg.version);
+            case SYNC_END -> controller.onRemoteSyncEnd(msg.docId);
+            case INSERT, DELETE, IMAGE_INSERT, IMAGE_RESIZE, IMAGE_MOVE -> controller.onRemoteEdit(msg);
+            case ACK -> controller.onRemoteAck(msg.docId, msg.version);
+            case LOCK -> controller.onRemoteLock(msg.blockId, msg.userId);
+            case UNLOCK -> controller.onRemoteUnlock(msg.blockId, msg.userId);
+            case LOCK_STATE -> controller.onRemoteLockState(msg.docId, msg.ops);
+            case DOC_DELETED -> controller.onRemoteDocDeleted(msg.docId);
+            case BATCH -> {
+                if (msg.ops != null) for (EditMessage op : msg.ops) dispatch(op);
+            }
+            default -> { /* JOIN/LEAVE 등은 무시 */ }
         }
     }
 }
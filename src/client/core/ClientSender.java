@@ -0,0 +1,164 @@
+package client.core;
+
+import global.codec.MessageCodec;
+import global.object.EditMessage;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// 클라이언트 송신 전용 스레드.
+// EDT(키 입력, 이미지 붙여넣기)는 큐에 넣고 바로 돌아가고, 인코딩/쓰기/flush는 여기서만 한다.
+// 큐는 FIFO 하나이므로 넣은 순서대로 전송된다.
+// 큐에는 상한이 있다: 넘치면 더 쌓지 않고 송신기를 닫는다 (소켓은 주인이 닫고, 재접속하면 전체 동기화로 돌아온다).
+public class ClientSender {
+
+    // 대기 중인 전송이 이만큼 쌓이면 UI에 "전송 지연"을 알리고, 절반 아래로 내려가면 해제
+    public interface BackpressureListener {
+        void onBackpressure(boolean busy);
+    }
+
+    private static final class Pending {
+        final EditMessage msg;
+        final long bytes;
+        final long enqueuedAt;
+
+        Pending(EditMessage msg, long bytes) {
+            this.msg = msg;
+            this.bytes = bytes;
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+
+    private final DataOutputStream out;
+    private final MessageCodec.Context tx = new MessageCodec.Context(); // 이 연결로 보낸 userId/docId (송신 스레드 전용)
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    private final int highCount;
+    private final long highBytes;
+    private final int maxCount;
+    private final long maxBytes;
+    private final BackpressureListener listener;
+    private volatile Thread thread;
+    private volatile boolean busy = false;
+    private volatile boolean closed = false;
+
+    // ===== 지표: 큐에 들어가서 소켓에 쓰일 때까지 걸린 시간 =====
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private volatile long maxLatencyNanos = 0;
+
+    public ClientSender(DataOutputStream out, int highCount, long highBytes, int maxCount, long maxBytes,
+                        BackpressureListener listener) {
+        this.out = out;
+        this.highCount = Math.max(1, highCount);
+        this.highBytes = Math.max(1, highBytes);
+        this.maxCount = Math.max(this.highCount, maxCount);
+        this.maxBytes = Math.max(this.highBytes, maxBytes);
+        this.listener = listener;
+    }
+
+    // 만든 쪽이 생성 뒤에 부른다
+    public void start() {
+        Thread t = Thread.ofPlatform().name("client-sender").daemon(true).unstarted(this::run);
+        thread = t;
+        t.start();
+    }
+
+    // 반환: 큐에 넣었는지 (닫혔거나 큐가 넘쳐 닫으면 false)
+    public boolean enqueue(EditMessage msg) {
+        if (closed || msg == null) return false;
+
+        long bytes = estimateBytes(msg);
+        // 큰 이미지 하나는 큐가 비어 있으면 받는다
+        if (queuedCount.get() > 0 && (queuedCount.get() >= maxCount || queuedBytes.get() + bytes > maxBytes)) {
+            System.out.println("[전송 큐 초과] " + queuedCount.get() + "개, " + queuedBytes.get() + " bytes");
+            close();
+            return false;
+        }
+
+        queue.offer(new Pending(msg, bytes));
+        int count = queuedCount.incrementAndGet();
+        long total = queuedBytes.addAndGet(bytes);
+
+        if (!busy && (count >= highCount || total >= highBytes)) setBusy(true);
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    public boolean isClosed() { return closed; }
+
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                Pending p = queue.poll();
+                if (p == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                // 큐가 빌 때까지 쓰고 flush는 한 번
+                while (p != null) {
+                    MessageCodec.writeMessage(out, p.msg, tx);
+                    dequeued(p);
+                    p = queue.poll();
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            closed = true;
+        }
+        // 남은 건 보내지 않는다: 지표와 "전송 지연" 표시도 되돌린다
+        queue.clear();
+        queuedCount.set(0);
+        queuedBytes.set(0);
+        setBusy(false);
+    }
+
+    private void dequeued(Pending p) {
+        int count = queuedCount.decrementAndGet();
+        long total = queuedBytes.addAndGet(-p.bytes);
+
+        long latency = System.nanoTime() - p.enqueuedAt;
+        sent.incrementAndGet();
+        totalLatencyNanos.addAndGet(latency);
+        if (latency > maxLatencyNanos) maxLatencyNanos = latency;
+
+        if (busy && count <= highCount / 2 && total <= highBytes / 2) setBusy(false);
+    }
+
+    private synchronized void setBusy(boolean b) {
+        if (busy == b) return;
+        busy = b;
+        if (listener != null) listener.onBackpressure(b);
+    }
+
+    private static long estimateBytes(EditMessage msg) {
+        long n = 32;
+        if (msg.text != null) n += msg.text.length();
+        if (msg.payload != null) n += msg.payload.length;
+        return n;
+    }
+
+    // ===== 지표 조회 =====
+    public boolean isBusy() { return busy; }
+
+    public int queuedCount() { return queuedCount.get(); }
+
+    public long averageLatencyMillis() {
+        long n = sent.get();
+        return n == 0 ? 0 : totalLatencyNanos.get() / n / 1_000_000;
+    }
+
+    public long maxLatencyMillis() { return maxLatencyNanos / 1_000_000; }
+}
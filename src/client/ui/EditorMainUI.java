@@ -6,7 +6,6 @@ import global.object.DocumentMeta;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.text.Document;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.util.List;
@@ -32,9 +31,9 @@ public class EditorMainUI extends JFrame {
 
     private JLabel l_connectionStatus;
     private JLabel l_mode;
+    private JLabel l_lockWait;
 
     private String currentDocId = null;
-    private Integer lastKeyPressLineIndex = null;
 
     private JPanel p_topBar;
     private JPanel p_statusBar;
@@ -265,6 +264,9 @@ public class EditorMainUI extends JFrame {
         t_editor.setCaretColor(UIStyle.PRIMARY);
 
         attachEditorKeyListeners();
+        t_editor.addCaretListener(e -> {
+            if (controller != null) controller.onCaretMoved(e.getDot());
+        });
 
         JScrollPane editorScroll = new JScrollPane(t_editor);
         editorScroll.setBorder(BorderFactory.createLineBorder(UIStyle.BORDER));
@@ -282,13 +284,7 @@ public class EditorMainUI extends JFrame {
         t_editor.addKeyListener(new KeyAdapter() {
             @Override
             public void keyReleased(java.awt.event.KeyEvent e) {
-                if (controller == null) return;
-
-                int currentLine = getLineIndexFromCaretPosition();
-                if (lastKeyPressLineIndex != null && lastKeyPressLineIndex != currentLine) {
-                    controller.onLineSwitched(lastKeyPressLineIndex, currentLine);
-                }
-                lastKeyPressLineIndex = currentLine;
+                if (controller != null) controller.onCaretLineMaybeChanged();
             }
         });
 
@@ -318,11 +314,14 @@ public class EditorMainUI extends JFrame {
 
         l_connectionStatus = new JLabel("서버 연결: 끊김");
         l_mode = new JLabel("모드: TEXT+IMAGE");
+        l_lockWait = new JLabel("", SwingConstants.CENTER);
 
         l_connectionStatus.setForeground(UIStyle.SUB);
         l_mode.setForeground(UIStyle.SUB);
+        l_lockWait.setForeground(UIStyle.SUB);
 
         p.add(l_connectionStatus, BorderLayout.WEST);
+        p.add(l_lockWait, BorderLayout.CENTER);
         p.add(l_mode, BorderLayout.EAST);
 
         UIStyle.applyCard(p);
@@ -360,16 +359,7 @@ public class EditorMainUI extends JFrame {
     }
 
     public int getLineIndexFromCaretPosition() {
-        try {
-            int caretPos = t_editor.getCaretPosition();
-            Document doc = t_editor.getDocument();
-            String text = doc.getText(0, caretPos);
-            int line = 0;
-            for (int i = 0; i < text.length(); i++) if (text.charAt(i) == '\n') line++;
-            return line;
-        } catch (Exception e) {
-            return 0;
-        }
+        return textManager.getLineOfOffset(t_editor.getCaretPosition());
     }
     public void onSnapshotFullSync(String docId, String title, String text) {
         this.currentDocId = docId;
@@ -386,6 +376,10 @@ public class EditorMainUI extends JFrame {
 
     public void updateConnectionStatus(String text) { l_connectionStatus.setText(text); }
 
+    public void beginRemoteBatch() { textManager.setIgnoreEvents(true); }
+
+    public void endRemoteBatch() { textManager.setIgnoreEvents(false); }
+
     public void applyInsert(int offset, String text) {
         textManager.applyInsert(offset, text);
         imageManager.onTextInserted(offset, text == null ? 0 : text.length());
@@ -417,7 +411,13 @@ public class EditorMainUI extends JFrame {
     }
 
     public void clearAllLineHighlights() {
-        textManager.clearLineHighlight(-1);
+        textManager.clearAllLineHighlights();
+    }
+
+    // 줄 잠금 대기 순번 (lineIndex < 0 이면 지운다)
+    public void showLockWait(int lineIndex, int position) {
+        if (lineIndex < 0) l_lockWait.setText("");
+        else l_lockWait.setText((lineIndex + 1) + "번째 줄 잠금 대기 중 (" + position + "번째)");
     }
 
     public void showLineLockedDialog(int lineIndex) {
@@ -458,8 +458,8 @@ public class EditorMainUI extends JFrame {
             }
 
             @Override
-            public void onLocalImageMoved(int blockId, int newOffset) {
-                controller.onLocalImageMoved(blockId, newOffset);
+            public void onLocalImageMoved(int blockId, int oldOffset, int newOffset) {
+                controller.onLocalImageMoved(blockId, oldOffset, newOffset);
             }
         });
     }
@@ -9,5 +9,5 @@ public interface ImageEventListener {
     void onLocalImageResized(int blockId, int width, int height);
 
     // 이 클라이언트에서 이미지를 다른 위치로 옮겼을 때 (드래그 등으로)
-    void onLocalImageMoved(int blockId, int newOffset);
+    void onLocalImageMoved(int blockId, int oldOffset, int newOffset);
 }
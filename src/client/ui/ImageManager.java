@@ -234,9 +234,15 @@ public class ImageManager {
         });
     }
 
+    // 서버/다른 클라이언트와 같은 규칙으로 보낸다: (이동 전 위치, 이동 전 문서 기준 목표 위치)
     private void moveImageLocal(int blockId, int newOffset) {
-        ImageInfo info = mover.moveLocal(blockId, newOffset);
-        if (info == null || eventListener == null) return;
-        eventListener.onLocalImageMoved(info.id, info.offset);
+        ImageInfo before = store.get(blockId);
+        if (before == null) return;
+        int oldOffset = before.offset;
+        int target = Math.max(0, Math.min(newOffset, editor.getDocument().getLength()));
+
+        ImageInfo info = mover.moveLocal(blockId, target);
+        if (info == null || eventListener == null || oldOffset == target) return;
+        eventListener.onLocalImageMoved(info.id, oldOffset, target);
     }
 }
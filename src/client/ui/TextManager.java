@@ -4,6 +4,7 @@ import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
+import javax.swing.text.Element;
 import javax.swing.text.Highlighter;
 import javax.swing.text.JTextComponent;
 import java.awt.*;
@@ -15,7 +16,8 @@ public class TextManager {
 
     private final JTextComponent editor;
     private DocumentChangeListener changeListener;
-    private boolean ignoreEvents = false;
+    // 원격 적용 중에는 리스너 이벤트를 무시. 묶음 적용 안에서 중첩되므로 깊이로 센다
+    private int ignoreDepth = 0;
     private boolean listenerRegistered = false;
     private Map<Integer, Object> highlightTags = new HashMap<>();
 
@@ -40,7 +42,7 @@ public class TextManager {
 
             @Override
             public void insertUpdate(DocumentEvent e) {
-                if (ignoreEvents) return;
+                if (ignoreDepth > 0) return;
 
                 try {
                     int offset = e.getOffset();
@@ -57,7 +59,7 @@ public class TextManager {
 
             @Override
             public void removeUpdate(DocumentEvent e) {
-                if (ignoreEvents) return;
+                if (ignoreDepth > 0) return;
 
                 if (changeListener != null) {
                     changeListener.onTextDeleted(e.getOffset(), e.getLength());
@@ -72,7 +74,7 @@ public class TextManager {
 
     // 원격 텍스트 삽입 적용
     public void applyInsert(int offset, String text) {
-        ignoreEvents = true;
+        setIgnoreEvents(true);
         try {
             Document doc = editor.getDocument();
             int safeOffset = Math.max(0, Math.min(offset, doc.getLength()));
@@ -82,13 +84,13 @@ public class TextManager {
                 // offset이 범위를 살짝 벗어난 경우 방어
             }
         } finally {
-            ignoreEvents = false;
+            setIgnoreEvents(false);
         }
     }
 
     // 원격 텍스트 삭제 적용
     public void applyDelete(int offset, int length) {
-        ignoreEvents = true;
+        setIgnoreEvents(true);
         try {
             Document doc = editor.getDocument();
             int docLen = doc.getLength();
@@ -104,21 +106,22 @@ public class TextManager {
                 }
             }
         } finally {
-            ignoreEvents = false;
+            setIgnoreEvents(false);
         }
     }
 
     public void setFullDocument(String text) {
-        ignoreEvents = true;
+        setIgnoreEvents(true);
         try {
             editor.setText(text);
         } finally {
-            ignoreEvents = false;
+            setIgnoreEvents(false);
         }
     }
 
     public void setIgnoreEvents(boolean ignore) {
-        this.ignoreEvents = ignore;
+        if (ignore) ignoreDepth++;
+        else if (ignoreDepth > 0) ignoreDepth--;
     }
 
     public void highlightLine(int lineIndex, Color color) {
@@ -157,44 +160,32 @@ public class TextManager {
         } catch (Exception ignored) {}
     }
 
+    public void clearAllLineHighlights() {
+        Highlighter h = editor.getHighlighter();
+        for (Object tag : highlightTags.values()) h.removeHighlight(tag);
+        highlightTags.clear();
+    }
+
+    // ===== 줄 <-> offset =====
+    // 문서의 루트 Element 자식(문단)이 곧 줄이고, 편집마다 Swing이 증분으로 갱신한다.
+    // 자식 찾기는 이진 탐색이라 문서 길이와 무관하게 O(log 줄 수), 글자 복사도 없다.
+    public int getLineOfOffset(int offset) {
+        Document doc = editor.getDocument();
+        int safe = Math.max(0, Math.min(offset, doc.getLength()));
+        return doc.getDefaultRootElement().getElementIndex(safe);
+    }
+
     private int getLineStartOffset(int lineIndex) {
-        try {
-            Document doc = editor.getDocument();
-            int offset = 0;
-            int currentLine = 0;
-
-            for (int i = 0; i < doc.getLength(); i++) {
-                if (currentLine == lineIndex) return offset;
-                if (doc.getText(i, 1).equals("\n")) {
-                    currentLine++;
-                    offset = i + 1;
-                }
-            }
-            return (currentLine == lineIndex) ? offset : -1;
-        } catch (Exception e) {
-            return -1;
-        }
+        Element root = editor.getDocument().getDefaultRootElement();
+        if (lineIndex < 0 || lineIndex >= root.getElementCount()) return -1;
+        return root.getElement(lineIndex).getStartOffset();
     }
 
+    // 줄 끝 ('\n' 앞, 마지막 줄은 문서 끝)
     private int getLineEndOffset(int lineIndex) {
-        try {
-            Document doc = editor.getDocument();
-            int offset = 0;
-            int currentLine = 0;
-
-            for (int i = 0; i < doc.getLength(); i++) {
-                if (currentLine == lineIndex && doc.getText(i, 1).equals("\n")) {
-                    return i;
-                }
-                if (doc.getText(i, 1).equals("\n")) {
-                    currentLine++;
-                    offset = i + 1;
-                }
-            }
-            return (currentLine == lineIndex) ? doc.getLength() : -1;
-        } catch (Exception e) {
-            return -1;
-        }
+        Document doc = editor.getDocument();
+        Element root = doc.getDefaultRootElement();
+        if (lineIndex < 0 || lineIndex >= root.getElementCount()) return -1;
+        return Math.min(root.getElement(lineIndex).getEndOffset() - 1, doc.getLength());
     }
 }
-
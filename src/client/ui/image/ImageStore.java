@@ -1,12 +1,12 @@
 package client.ui.image;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import global.util.AnchorIndex;
 
+// 이미지 위치는 AnchorIndex가 관리한다 (편집마다 전체 순회하지 않음).
+// ImageInfo.offset 은 get()/findByOffsetNear()로 꺼낼 때 최신 값으로 맞춰진다.
 public class ImageStore {
 
-    private final Map<Integer, ImageInfo> images = new HashMap<>();
+    private final AnchorIndex<ImageInfo> images = new AnchorIndex<>();
     private int nextId = 1;
 
     public void clear() {
@@ -21,7 +21,7 @@ public class ImageStore {
         info.width = width;
         info.height = height;
         info.data = data;
-        images.put(info.id, info);
+        images.put(info.id, offset, info);
         return info;
     }
 
@@ -32,13 +32,13 @@ public class ImageStore {
         info.width = width;
         info.height = height;
         info.data = data;
-        images.put(id, info);
+        images.put(id, offset, info);
         if (id >= nextId) nextId = id + 1;
         return info;
     }
 
     public ImageInfo get(int id) {
-        return images.get(id);
+        return refresh(images.get(id));
     }
 
     public void resize(int id, int width, int height) {
@@ -51,58 +51,37 @@ public class ImageStore {
     public void move(int id, int newOffset) {
         ImageInfo info = images.get(id);
         if (info == null) return;
+        images.move(id, newOffset);
         info.offset = newOffset;
     }
 
     // 텍스트 삽입/삭제에 따른 offset 조정
     public void shiftOnInsert(int fromOffset, int delta) {
         if (delta == 0) return;
-        for (ImageInfo info : images.values()) {
-            if (info.offset >= fromOffset) info.offset += delta;
-        }
+        images.shiftFrom(fromOffset, delta);
     }
 
     public void shiftOnDelete(int start, int length) {
         if (length <= 0) return;
-        int end = start + length;
-
-        Iterator<ImageInfo> it = images.values().iterator();
-        while (it.hasNext()) {
-            ImageInfo info = it.next();
-            if (info.offset >= start && info.offset < end) {
-                it.remove();
-            } else if (info.offset >= end) {
-                info.offset -= length;
-            }
-        }
+        images.removeRange(start, start + length);
     }
 
     // MOVE 전용 shift (remove/insert가 1글자씩 발생)
+    // 옮기는 이미지 자신은 oldOffset에 있으므로 영향이 없고, 마지막 move()에서 최종 위치가 정해진다
     public void shiftForMoveRemove(int movedId, int oldOffset) {
-        for (ImageInfo info : images.values()) {
-            if (info.id == movedId) continue;
-            if (info.offset > oldOffset) info.offset -= 1;
-        }
+        images.shiftFrom(oldOffset + 1, -1);
     }
 
     public void shiftForMoveInsert(int movedId, int newOffset) {
-        for (ImageInfo info : images.values()) {
-            if (info.id == movedId) continue;
-            if (info.offset >= newOffset) info.offset += 1;
-        }
+        images.shiftFrom(newOffset, 1);
     }
 
     public ImageInfo findByOffsetNear(int offset) {
-        ImageInfo best = null;
-        int bestDist = Integer.MAX_VALUE;
+        return refresh(images.nearest(offset, 1));
+    }
 
-        for (ImageInfo info : images.values()) {
-            int dist = Math.abs(info.offset - offset);
-            if (dist < bestDist && dist <= 1) {
-                bestDist = dist;
-                best = info;
-            }
-        }
-        return best;
+    private ImageInfo refresh(ImageInfo info) {
+        if (info != null) info.offset = images.offsetOf(info.id);
+        return info;
     }
 }
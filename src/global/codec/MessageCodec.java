@@ -0,0 +1,456 @@
+package global.codec;
+
+import global.enums.Mode;
+import global.object.DocumentMeta;
+import global.object.EditMessage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+// 길이 프리픽스 프레임: [int length][body]
+// body = [mode tag(1byte)][해당 Mode가 쓰는 필드만, 고정 순서]
+//  - int   : zigzag varint
+//  - String: varint(byteLen + 1) + UTF-8 (0 = null)
+//  - byte[]: varint(len + 1) + raw (0 = null)
+//  - long  : varint (version)
+//  - BATCH : varint(count) + count * (varint(bodyLen) + body)
+// Mode 태그는 ordinal 이므로 Mode enum 에는 항목을 "끝에만" 추가해야 한다.
+// 태그의 위 3비트는 연결 문맥(Context) 용: userId/docId 가 직전 값과 같아 생략했음, 이 프레임 값으로 문맥을 바꿈.
+public final class MessageCodec {
+
+    public static final int HEADER_SIZE = 4;
+    public static final int MAX_FRAME = 64 * 1024 * 1024;
+    // 블로킹 읽기에서 본문 배열을 처음 잡는 크기
+    private static final int READ_CHUNK = 64 * 1024;
+    // 이 크기 이상의 공유 프레임(주로 이미지)은 direct 버퍼에 둔다
+    private static final int DIRECT_THRESHOLD = 16 * 1024;
+    // ops 를 품은 메시지의 중첩 한도: BATCH > LOCK_STATE > LOCK 이 가장 깊다.
+    // 한도가 없으면 BATCH 를 겹겹이 넣은 작은 프레임 하나로 디코더 스택이 넘친다
+    private static final int MAX_OPS_DEPTH = 2;
+
+    // ===== 필드 비트 =====
+    private static final int F_USER       = 1;
+    private static final int F_TEXT       = 1 << 1;
+    private static final int F_DOC_ID     = 1 << 2;
+    private static final int F_DOC_TITLE  = 1 << 3;
+    private static final int F_DOCS       = 1 << 4;
+    private static final int F_PAYLOAD    = 1 << 5;
+    private static final int F_BLOCK_ID   = 1 << 6;
+    private static final int F_OFFSET     = 1 << 7;
+    private static final int F_LENGTH     = 1 << 8;
+    private static final int F_WIDTH      = 1 << 9;
+    private static final int F_HEIGHT     = 1 << 10;
+    private static final int F_NEW_OFFSET = 1 << 11;
+    private static final int F_OPS        = 1 << 12;
+    private static final int F_VERSION    = 1 << 13;
+    private static final int F_ALL        = (1 << 14) - 1;
+
+    // ===== 태그 비트 (모드는 32개 미만) =====
+    private static final int TAG_MODE      = 0x1f;
+    private static final int TAG_SET_CTX   = 1 << 5;
+    private static final int TAG_SAME_DOC  = 1 << 6;
+    private static final int TAG_SAME_USER = 1 << 7;
+
+    private static final Mode[] MODES = Mode.values();
+    private static final int[] FIELDS = new int[MODES.length];
+
+    static {
+        if (MODES.length > TAG_MODE + 1) throw new IllegalStateException("too many modes for the tag byte");
+        for (int i = 0; i < FIELDS.length; i++) FIELDS[i] = F_ALL;
+
+        int routed = F_USER | F_DOC_ID;
+        FIELDS[Mode.INSERT.ordinal()]       = routed | F_VERSION | F_OFFSET | F_LENGTH | F_TEXT;
+        FIELDS[Mode.DELETE.ordinal()]       = routed | F_VERSION | F_OFFSET | F_LENGTH;
+        FIELDS[Mode.FULL_SYNC.ordinal()]    = routed | F_VERSION | F_DOC_TITLE | F_OFFSET | F_LENGTH | F_TEXT;
+        FIELDS[Mode.IMAGE_INSERT.ordinal()] = routed | F_VERSION | F_BLOCK_ID | F_OFFSET | F_LENGTH | F_WIDTH | F_HEIGHT | F_PAYLOAD;
+        FIELDS[Mode.IMAGE_RESIZE.ordinal()] = routed | F_VERSION | F_BLOCK_ID | F_WIDTH | F_HEIGHT;
+        FIELDS[Mode.IMAGE_MOVE.ordinal()]   = routed | F_VERSION | F_BLOCK_ID | F_OFFSET | F_NEW_OFFSET;
+        FIELDS[Mode.DOC_OPEN.ordinal()]     = routed;
+        FIELDS[Mode.DOC_LIST.ordinal()]     = F_USER | F_DOCS;
+        FIELDS[Mode.DOC_CREATE.ordinal()]   = F_USER | F_DOC_TITLE;
+        FIELDS[Mode.DOC_DELETE.ordinal()]   = routed;
+        FIELDS[Mode.SYNC_END.ordinal()]     = routed;
+        FIELDS[Mode.LOCK.ordinal()]         = routed | F_BLOCK_ID | F_LENGTH;
+        FIELDS[Mode.UNLOCK.ordinal()]       = routed | F_BLOCK_ID;
+        FIELDS[Mode.DOC_DELETED.ordinal()]  = routed;
+        FIELDS[Mode.DOC_LEAVE.ordinal()]    = routed;
+        FIELDS[Mode.BATCH.ordinal()]        = F_OPS;
+        FIELDS[Mode.ACK.ordinal()]          = routed | F_VERSION;
+        FIELDS[Mode.LOCK_STATE.ordinal()]   = routed | F_OPS;
+        FIELDS[Mode.LOCK_MOVE.ordinal()]    = routed | F_BLOCK_ID | F_LENGTH;
+    }
+
+    private MessageCodec() {}
+
+    // 한 방향 스트림의 연결 문맥: 마지막으로 보낸 userId/docId.
+    // 같은 값이면 생략하고 받는 쪽이 문맥에서 채운다 (문서 안의 편집마다 32자 docId 와 userId 를 다시 보내지 않게).
+    // 양쪽이 같은 프레임을 같은 순서로 거쳐야 하므로 쓰는 스레드가 하나인 클라이언트 → 서버 방향에만 쓴다.
+    // 서버 → 클라이언트 프레임은 여러 연결이 나눠 쓰므로 (sharedFrame/batchFrame) 문맥 없이 인코딩한다.
+    public static final class Context {
+        private String userId;
+        private String docId;
+    }
+
+    // ===== body 인코딩/디코딩 =====
+    public static byte[] encode(EditMessage msg) throws IOException {
+        ByteWriter w = new ByteWriter(64);
+        writeBody(w, msg, null);
+        return w.toByteArray();
+    }
+
+    public static EditMessage decode(byte[] body) throws IOException {
+        return decode(body, 0, body.length);
+    }
+
+    public static EditMessage decode(byte[] buf, int off, int len) throws IOException {
+        return decode(buf, off, len, null);
+    }
+
+    // ctx: 이 연결에서 받은 문맥 (문맥으로 인코딩된 프레임을 읽을 때)
+    public static EditMessage decode(byte[] buf, int off, int len, Context ctx) throws IOException {
+        return decode(buf, off, len, 0, ctx);
+    }
+
+    private static EditMessage decode(byte[] buf, int off, int len, int depth, Context ctx) throws IOException {
+        try {
+            ByteReader r = new ByteReader(buf, off, off + len);
+            EditMessage msg = readBody(r, depth, ctx);
+            if (r.pos != r.end) throw new IOException("trailing bytes: " + (r.end - r.pos));
+            return msg;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("truncated frame", e);
+        }
+    }
+
+    private static void writeBody(ByteWriter w, EditMessage msg, Context ctx) throws IOException {
+        if (msg == null || msg.mode == null) throw new IOException("message without mode");
+
+        int f = FIELDS[msg.mode.ordinal()];
+        boolean user = (f & F_USER) != 0;
+        boolean doc = (f & F_DOC_ID) != 0;
+        int tag = msg.mode.ordinal();
+        if (ctx != null) {
+            if (user && Objects.equals(msg.userId, ctx.userId)) { tag |= TAG_SAME_USER; user = false; }
+            if (doc && Objects.equals(msg.docId, ctx.docId)) { tag |= TAG_SAME_DOC; doc = false; }
+            if (user || doc) tag |= TAG_SET_CTX;
+        }
+        w.put(tag);
+
+        if (user) w.putString(msg.userId);
+        if (doc) w.putString(msg.docId);
+        if ((tag & TAG_SET_CTX) != 0) {
+            if (user) ctx.userId = msg.userId;
+            if (doc) ctx.docId = msg.docId;
+        }
+        if ((f & F_DOC_TITLE) != 0) w.putString(msg.docTitle);
+        if ((f & F_VERSION) != 0) w.putVarLong(msg.version);
+        if ((f & F_BLOCK_ID) != 0) w.putInt(msg.blockId);
+        if ((f & F_OFFSET) != 0) w.putInt(msg.offset);
+        if ((f & F_LENGTH) != 0) w.putInt(msg.length);
+        if ((f & F_WIDTH) != 0) w.putInt(msg.width);
+        if ((f & F_HEIGHT) != 0) w.putInt(msg.height);
+        if ((f & F_NEW_OFFSET) != 0) w.putInt(msg.newOffset);
+        if ((f & F_TEXT) != 0) w.putString(msg.text);
+        if ((f & F_PAYLOAD) != 0) w.putBytes(msg.payload);
+        if ((f & F_DOCS) != 0) writeDocs(w, msg.docs);
+        if ((f & F_OPS) != 0) writeOps(w, msg.ops, ctx);
+    }
+
+    private static EditMessage readBody(ByteReader r, int depth, Context ctx) throws IOException {
+        int tag = r.get();
+        int m = tag & TAG_MODE;
+        if (m >= MODES.length) throw new IOException("unknown mode tag: " + tag);
+        if ((tag & ~TAG_MODE) != 0 && ctx == null) throw new IOException("context frame without context: " + tag);
+
+        Mode mode = MODES[m];
+        int f = FIELDS[m];
+        EditMessage msg = new EditMessage(mode, null, null);
+
+        if ((f & F_USER) != 0) msg.userId = ((tag & TAG_SAME_USER) != 0) ? ctx.userId : r.getString();
+        if ((f & F_DOC_ID) != 0) msg.docId = ((tag & TAG_SAME_DOC) != 0) ? ctx.docId : r.getString();
+        if ((tag & TAG_SET_CTX) != 0) {
+            if ((f & F_USER) != 0 && (tag & TAG_SAME_USER) == 0) ctx.userId = msg.userId;
+            if ((f & F_DOC_ID) != 0 && (tag & TAG_SAME_DOC) == 0) ctx.docId = msg.docId;
+        }
+        if ((f & F_DOC_TITLE) != 0) msg.docTitle = r.getString();
+        if ((f & F_VERSION) != 0) msg.version = r.getVarLong();
+        if ((f & F_BLOCK_ID) != 0) msg.blockId = r.getInt();
+        if ((f & F_OFFSET) != 0) msg.offset = r.getInt();
+        if ((f & F_LENGTH) != 0) msg.length = r.getInt();
+        if ((f & F_WIDTH) != 0) msg.width = r.getInt();
+        if ((f & F_HEIGHT) != 0) msg.height = r.getInt();
+        if ((f & F_NEW_OFFSET) != 0) msg.newOffset = r.getInt();
+        if ((f & F_TEXT) != 0) msg.text = r.getString();
+        if ((f & F_PAYLOAD) != 0) msg.payload = r.getBytes();
+        if ((f & F_DOCS) != 0) msg.docs = readDocs(r);
+        if ((f & F_OPS) != 0) msg.ops = readOps(r, depth, ctx);
+        return msg;
+    }
+
+    private static void writeOps(ByteWriter w, List<EditMessage> ops, Context ctx) throws IOException {
+        int n = (ops == null) ? 0 : ops.size();
+        w.putVarLong(n);
+        for (int i = 0; i < n; i++) {
+            ByteWriter inner = new ByteWriter(64);
+            writeBody(inner, ops.get(i), ctx);
+            w.putVarLong(inner.size);
+            w.putRaw(inner.buf, 0, inner.size);
+        }
+    }
+
+    private static ArrayList<EditMessage> readOps(ByteReader r, int depth, Context ctx) throws IOException {
+        if (depth >= MAX_OPS_DEPTH) throw new IOException("ops nested too deep");
+        // int 로 자르기 전에 long 으로 범위를 본다 (큰 varint 가 음수/작은 값으로 바뀌지 않게)
+        long count = r.getVarLong();
+        if (count < 0 || count > r.end - r.pos) throw new IOException("invalid batch size: " + count);
+        int n = (int) count;
+        ArrayList<EditMessage> ops = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            long len = r.getVarLong();
+            if (len < 0 || len > r.end - r.pos) throw new IOException("invalid batch entry: " + len);
+            ops.add(decode(r.buf, r.pos, (int) len, depth + 1, ctx));
+            r.pos += (int) len;
+        }
+        return ops;
+    }
+
+    private static void writeDocs(ByteWriter w, List<DocumentMeta> docs) {
+        if (docs == null) { w.putVarLong(0); return; }
+        w.putVarLong(docs.size() + 1L);
+        for (DocumentMeta m : docs) {
+            w.putString(m.id);
+            w.putString(m.title);
+            w.putVarLong(m.updatedAt);
+        }
+    }
+
+    private static List<DocumentMeta> readDocs(ByteReader r) throws IOException {
+        int n = r.getLength();
+        if (n < 0) return null;
+        List<DocumentMeta> docs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String id = r.getString();
+            String title = r.getString();
+            long updatedAt = r.getVarLong();
+            docs.add(new DocumentMeta(id, title, updatedAt));
+        }
+        return docs;
+    }
+
+    // ===== 프레임 (블로킹 스트림) =====
+    public static void writeFrame(DataOutputStream out, EditMessage msg) throws IOException {
+        writeMessage(out, msg);
+        out.flush();
+    }
+
+    // flush 없이 버퍼에만 쓴다 (여러 개를 쓰고 한 번 flush 할 때)
+    public static void writeMessage(DataOutputStream out, EditMessage msg) throws IOException {
+        writeMessage(out, msg, null);
+    }
+
+    // ctx: 이 스트림으로 보낸 문맥 (같은 스트림에는 늘 같은 문맥으로 쓴다)
+    public static void writeMessage(DataOutputStream out, EditMessage msg, Context ctx) throws IOException {
+        ByteBuffer frame = encodeFrame(msg, ctx);
+        out.write(frame.array(), 0, frame.limit());
+    }
+
+    public static EditMessage readFrame(DataInputStream in) throws IOException {
+        return readFrame(in, null);
+    }
+
+    public static EditMessage readFrame(DataInputStream in, Context ctx) throws IOException {
+        int len = in.readInt();
+        checkLength(len);
+        // 본문은 받은 만큼 두 배씩 늘려 가며 읽는다 (길이 헤더만 보내고 멈춘 상대가 큰 배열을 미리 잡게 하지 않는다)
+        byte[] body = new byte[Math.min(len, READ_CHUNK)];
+        int got = 0;
+        while (true) {
+            in.readFully(body, got, body.length - got);
+            got = body.length;
+            if (got == len) break;
+            body = Arrays.copyOf(body, (int) Math.min(len, 2L * body.length));
+        }
+        return decode(body, 0, len, ctx);
+    }
+
+    // ===== 프레임 (NIO) =====
+    public static ByteBuffer encodeFrame(EditMessage msg) throws IOException {
+        return encodeFrame(msg, null);
+    }
+
+    private static ByteBuffer encodeFrame(EditMessage msg, Context ctx) throws IOException {
+        ByteWriter w = new ByteWriter(64);
+        w.size = HEADER_SIZE;
+        writeBody(w, msg, ctx);
+
+        int len = w.size - HEADER_SIZE;
+        checkLength(len);
+        ByteBuffer frame = ByteBuffer.wrap(w.buf, 0, w.size);
+        frame.putInt(0, len);
+        return frame;
+    }
+
+    // 브로드캐스트용: 한 번 인코딩해서 여러 연결이 같이 쓰는 읽기 전용 프레임.
+    // 연결마다 duplicate() 해서 position만 따로 가진다. 큰 프레임의 direct 복사는 여러 연결이
+    // 나눠 쓸 때만 값을 하므로, 한 연결에만 보내는 메시지는 encodeFrame 을 쓴다.
+    public static ByteBuffer sharedFrame(EditMessage msg) throws IOException {
+        ByteBuffer frame = encodeFrame(msg);
+        if (frame.limit() >= DIRECT_THRESHOLD) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(frame.limit());
+            direct.put(frame);
+            direct.flip();
+            frame = direct;
+        }
+        return frame.asReadOnlyBuffer();
+    }
+
+    // 이미 인코딩된 프레임 여러 개를 다시 인코딩하지 않고 BATCH 프레임 하나로 묶는다
+    public static ByteBuffer batchFrame(List<ByteBuffer> frames) throws IOException {
+        int total = 0;
+        for (ByteBuffer f : frames) total += f.remaining();
+
+        ByteWriter w = new ByteWriter(HEADER_SIZE + total + 8 + frames.size() * 5);
+        w.size = HEADER_SIZE;
+        w.put(Mode.BATCH.ordinal());
+        w.putVarLong(frames.size());
+        for (ByteBuffer f : frames) {
+            ByteBuffer dup = f.duplicate();
+            int len = dup.getInt();
+            w.putVarLong(len);
+            w.ensure(len);
+            dup.get(w.buf, w.size, len);
+            w.size += len;
+        }
+
+        int len = w.size - HEADER_SIZE;
+        checkLength(len);
+        ByteBuffer frame = ByteBuffer.wrap(w.buf, 0, w.size);
+        frame.putInt(0, len);
+        return frame;
+    }
+
+    public static void checkLength(int len) throws IOException {
+        if (len < 0 || len > MAX_FRAME) throw new IOException("invalid frame length: " + len);
+    }
+
+    // ===== 바이트 버퍼 =====
+    private static final class ByteWriter {
+        byte[] buf;
+        int size;
+
+        ByteWriter(int capacity) { buf = new byte[capacity]; }
+
+        void ensure(int extra) {
+            if (size + extra <= buf.length) return;
+            int cap = Math.max(buf.length * 2, size + extra);
+            byte[] n = new byte[cap];
+            System.arraycopy(buf, 0, n, 0, size);
+            buf = n;
+        }
+
+        void put(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void putVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void putInt(int v) {
+            putVarLong(((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL);
+        }
+
+        void putString(String s) {
+            putBytes(s == null ? null : s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void putBytes(byte[] b) {
+            if (b == null) { putVarLong(0); return; }
+            putVarLong(b.length + 1L);
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, size, b.length);
+            size += b.length;
+        }
+
+        void putRaw(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buf, size, len);
+            size += len;
+        }
+
+        byte[] toByteArray() {
+            byte[] out = new byte[size];
+            System.arraycopy(buf, 0, out, 0, size);
+            return out;
+        }
+    }
+
+    private static final class ByteReader {
+        final byte[] buf;
+        int pos;
+        final int end;
+
+        ByteReader(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        int get() {
+            if (pos >= end) throw new IndexOutOfBoundsException();
+            return buf[pos++] & 0xFF;
+        }
+
+        long getVarLong() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = get();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("malformed varint");
+        }
+
+        int getInt() throws IOException {
+            int v = (int) getVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        // varint(len + 1), 0 = null → -1
+        int getLength() throws IOException {
+            long n = getVarLong() - 1;
+            if (n < -1 || n > end - pos) throw new IOException("invalid length: " + n);
+            return (int) n;
+        }
+
+        String getString() throws IOException {
+            int n = getLength();
+            if (n < 0) return null;
+            if (n > end - pos) throw new IndexOutOfBoundsException();
+            String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+
+        byte[] getBytes() throws IOException {
+            int n = getLength();
+            if (n < 0) return null;
+            if (n > end - pos) throw new IndexOutOfBoundsException();
+            byte[] b = new byte[n];
+            System.arraycopy(buf, pos, b, 0, n);
+            pos += n;
+            return b;
+        }
+    }
+}
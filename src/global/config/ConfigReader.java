@@ -2,6 +2,8 @@ package global.config;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.util.HashMap;
+import java.util.Map;
 
 public class ConfigReader {
 
@@ -11,7 +13,19 @@ public class ConfigReader {
             String ip = br.readLine().trim();       // 첫 번째 줄: IP
             int port = Integer.parseInt(br.readLine().trim());  // 두 번째 줄: PORT
 
-            return new ServerConfig(ip, port);
+            // 세 번째 줄부터: key=value 옵션 (선택)
+            Map<String, String> options = new HashMap<>();
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                int eq = line.indexOf('=');
+                if (eq <= 0) continue;
+                options.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+
+            return new ServerConfig(ip, port, options);
 
         } catch (Exception e) {
             System.out.println("[설정 오류] server.txt 읽기 실패: " + e.getMessage());
@@ -23,10 +37,30 @@ public class ConfigReader {
     public static class ServerConfig {
         public final String ip;
         public final int port;
+        private final Map<String, String> options;
 
         public ServerConfig(String ip, int port) {
+            this(ip, port, new HashMap<>());
+        }
+
+        public ServerConfig(String ip, int port, Map<String, String> options) {
             this.ip = ip;
             this.port = port;
+            this.options = options;
+        }
+
+        public String get(String key, String def) {
+            String v = options.get(key);
+            return (v == null || v.isEmpty()) ? def : v;
+        }
+
+        public int getInt(String key, int def) {
+            try {
+                String v = options.get(key);
+                return (v == null) ? def : Integer.parseInt(v);
+            } catch (NumberFormatException e) {
+                return def;
+            }
         }
     }
-}
\ No newline at end of file
+}
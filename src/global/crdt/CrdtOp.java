@@ -0,0 +1,41 @@
+package global.crdt;
+
+// RGA 연산 하나.
+// INSERT: parent(0 = 문서 맨 앞) 바로 뒤에 id 원소를 넣는다. imageId != 0 이면 이미지 자리표시 원소
+// DELETE: id 원소를 tombstone 으로 만든다 (clock = 삭제 시각)
+public class CrdtOp {
+
+    public static final byte INSERT = 0;
+    public static final byte DELETE = 1;
+
+    public final byte kind;
+    public final long id;
+    public final long parent;
+    public final char ch;
+    public final int imageId;
+    public final long clock;
+
+    private CrdtOp(byte kind, long id, long parent, char ch, int imageId, long clock) {
+        this.kind = kind;
+        this.id = id;
+        this.parent = parent;
+        this.ch = ch;
+        this.imageId = imageId;
+        this.clock = clock;
+    }
+
+    public static CrdtOp insert(long id, long parent, char ch, int imageId) {
+        return new CrdtOp(INSERT, id, parent, ch, imageId, RgaReplica.clockOf(id));
+    }
+
+    public static CrdtOp delete(long id, long clock) {
+        return new CrdtOp(DELETE, id, 0, '\0', 0, clock);
+    }
+
+    @Override
+    public String toString() {
+        return (kind == INSERT)
+                ? "INS[" + RgaReplica.idString(id) + " after " + RgaReplica.idString(parent) + " '" + ch + "']"
+                : "DEL[" + RgaReplica.idString(id) + " @" + clock + "]";
+    }
+}
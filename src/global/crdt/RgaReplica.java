@@ -0,0 +1,512 @@
+package global.crdt;
+
+import global.object.DocumentState;
+import global.object.ImageState;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+// RGA(Replicated Growable Array) 시퀀스 CRDT. 텍스트 한 글자 / 이미지 자리표시 하나가 원소 하나다.
+// - 원소 id = (lamport << SITE_BITS) | site. id가 클수록 같은 부모 뒤에서 앞에 온다
+// - 삽입은 "부모 원소 바로 뒤", 삭제는 tombstone 표시라서 적용 순서와 무관하게 모든 복제본이 같은 결과로 수렴한다
+// - 부모/대상이 아직 없는 원격 연산은 보류했다가 도착하면 적용
+// - gc(stable): 모든 복제본이 본 삭제(clock <= stable)의 tombstone 을 제거
+// 원소는 문서 순서의 implicit treap 에 두고 id -> 원소 맵으로 찾는다. 서브트리의 원소 수/보이는 원소 수를 들고
+// 부모 링크로 올라가므로 원소 -> 위치, 보이는 위치 -> 원소, 삽입/삭제가 모두 O(log n).
+// 스레드 안전하지 않음.
+public class RgaReplica {
+
+    public static final char IMAGE_PLACEHOLDER = '\uFFFC';
+
+    static final int SITE_BITS = 16;
+    static final long HEAD = 0;
+
+    private static final class Elem {
+        final long id;
+        final char ch;
+        final int imageId;
+        long deletedAt; // 0 = 살아 있음
+
+        // treap: 서브트리 원소 수 / 보이는 원소 수 / 보이는 이미지 수
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Elem left, right, parent;
+        int size, vis, imgs;
+
+        Elem(long id, char ch, int imageId) {
+            this.id = id;
+            this.ch = ch;
+            this.imageId = imageId;
+            update();
+        }
+
+        boolean visible() { return deletedAt == 0; }
+
+        void update() {
+            size = 1 + size(left) + size(right);
+            vis = (visible() ? 1 : 0) + vis(left) + vis(right);
+            imgs = (visible() && imageId != 0 ? 1 : 0) + imgs(left) + imgs(right);
+            if (left != null) left.parent = this;
+            if (right != null) right.parent = this;
+        }
+    }
+
+    private final int site;
+    private long clock = 0;
+
+    private Elem root;
+    private final HashMap<Long, Elem> byId = new HashMap<>();
+    private final ArrayList<CrdtOp> pending = new ArrayList<>();
+    private int visibleCount = 0;
+    private int tombstones = 0;
+
+    public RgaReplica(int site) {
+        if (site < 0 || site >= (1 << SITE_BITS)) throw new IllegalArgumentException("site: " + site);
+        this.site = site;
+    }
+
+    static long clockOf(long id) { return id >>> SITE_BITS; }
+
+    static int siteOf(long id) { return (int) (id & ((1L << SITE_BITS) - 1)); }
+
+    static String idString(long id) { return id == HEAD ? "HEAD" : clockOf(id) + "@" + siteOf(id); }
+
+    private long nextId() {
+        return (++clock << SITE_BITS) | site;
+    }
+
+    // ===== 조회 =====
+    public int length() { return visibleCount; }
+
+    public int tombstoneCount() { return tombstones; }
+
+    public long clock() { return clock; }
+
+    public String text() {
+        StringBuilder sb = new StringBuilder(visibleCount);
+        for (Elem e = first(); e != null; e = next(e)) if (e.visible()) sb.append(e.ch);
+        return sb.toString();
+    }
+
+    // 이미지 자리표시의 현재 위치 (없으면 -1)
+    public int indexOfImage(int imageId) {
+        for (int[] img : images()) {
+            if (img[0] == imageId) return img[1];
+        }
+        return -1;
+    }
+
+    // 보이는 이미지들: {imageId, offset} 쌍을 문서 순서로 (이미지가 없는 서브트리는 건너뛴다)
+    public List<int[]> images() {
+        List<int[]> out = new ArrayList<>();
+        collectImages(root, 0, out);
+        return out;
+    }
+
+    // before = n 서브트리 앞의 보이는 원소 수
+    private static void collectImages(Elem n, int before, List<int[]> out) {
+        if (n == null || n.imgs == 0) return;
+
+        collectImages(n.left, before, out);
+        int at = before + vis(n.left);
+        if (n.visible() && n.imageId != 0) out.add(new int[]{n.imageId, at});
+        collectImages(n.right, at + (n.visible() ? 1 : 0), out);
+    }
+
+    // ===== 로컬 편집 (연산을 만들어 적용하고 돌려준다) =====
+    public List<CrdtOp> insert(int index, String s) {
+        List<CrdtOp> ops = new ArrayList<>();
+        if (s == null || s.isEmpty()) return ops;
+
+        long parent = visibleIdBefore(index);
+        for (int i = 0; i < s.length(); i++) {
+            CrdtOp op = CrdtOp.insert(nextId(), parent, s.charAt(i), 0);
+            integrate(op);
+            ops.add(op);
+            parent = op.id;
+        }
+        return ops;
+    }
+
+    public CrdtOp insertImage(int index, int imageId) {
+        CrdtOp op = CrdtOp.insert(nextId(), visibleIdBefore(index), IMAGE_PLACEHOLDER, imageId);
+        integrate(op);
+        return op;
+    }
+
+    public List<CrdtOp> delete(int index, int length) {
+        List<CrdtOp> ops = new ArrayList<>();
+        if (length <= 0) return ops;
+
+        // 먼저 대상 id를 모은 뒤 삭제 (삭제하면서 보이는 위치가 바뀌므로)
+        int from = Math.max(0, index);
+        int to = Math.min(visibleCount, index + length);
+        List<Long> targets = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) targets.add(visibleAt(i).id);
+
+        long now = ++clock;
+        for (long id : targets) {
+            CrdtOp op = CrdtOp.delete(id, now);
+            integrate(op);
+            ops.add(op);
+        }
+        return ops;
+    }
+
+    private long visibleIdBefore(int index) {
+        if (index <= 0 || visibleCount == 0) return HEAD;
+        return visibleAt(Math.min(index, visibleCount) - 1).id; // 범위를 넘으면 맨 끝
+    }
+
+    // ===== 원격 연산 =====
+    // 순서/중복과 무관하게 적용 가능. 인과 관계가 안 맞으면 보류했다가 나중에 적용
+    public void apply(CrdtOp op) {
+        if (!integrate(op)) {
+            pending.add(op);
+            return;
+        }
+
+        boolean progress = true;
+        while (progress && !pending.isEmpty()) {
+            progress = false;
+            Iterator<CrdtOp> it = pending.iterator();
+            while (it.hasNext()) {
+                if (integrate(it.next())) {
+                    it.remove();
+                    progress = true;
+                }
+            }
+        }
+    }
+
+    public void applyAll(List<CrdtOp> ops) {
+        for (CrdtOp op : ops) apply(op);
+    }
+
+    public int pendingCount() { return pending.size(); }
+
+    private boolean integrate(CrdtOp op) {
+        clock = Math.max(clock, op.clock);
+
+        if (op.kind == CrdtOp.DELETE) {
+            Elem e = byId.get(op.id);
+            if (e == null) return false;
+            if (e.visible()) {
+                e.deletedAt = op.clock;
+                for (Elem p = e; p != null; p = p.parent) p.update();
+                visibleCount--;
+                tombstones++;
+            }
+            return true;
+        }
+
+        if (byId.containsKey(op.id)) return true; // 중복
+        int pos;
+        Elem after;
+        if (op.parent == HEAD) {
+            pos = 0;
+            after = first();
+        } else {
+            Elem parent = byId.get(op.parent);
+            if (parent == null) return false;
+            pos = rank(parent) + 1;
+            after = next(parent);
+        }
+
+        // 같은 부모 뒤에 동시에 들어온 원소들 중 id가 큰 쪽(과 그 뒤에 달린 원소들)을 건너뛴다
+        while (after != null && after.id > op.id) {
+            after = next(after);
+            pos++;
+        }
+
+        Elem e = new Elem(op.id, op.ch, op.imageId);
+        Elem[] p = split(root, pos);
+        setRoot(merge(merge(p[0], e), p[1]));
+        byId.put(e.id, e);
+        visibleCount++;
+        return true;
+    }
+
+    // ===== tombstone 정리 =====
+    // stableClock 이하 시각의 삭제는 모든 복제본이 보았으므로 그 원소를 부모로 하는 새 삽입이 오지 않는다
+    public int gc(long stableClock) {
+        List<Elem> kept = new ArrayList<>(size(root));
+        int removed = 0;
+        for (Elem e = first(); e != null; e = next(e)) {
+            if (e.visible() || e.deletedAt > stableClock) {
+                kept.add(e);
+            } else {
+                byId.remove(e.id);
+                removed++;
+            }
+        }
+        if (removed == 0) return 0;
+
+        build(kept);
+        tombstones -= removed;
+        return removed;
+    }
+
+    // ===== DocumentState 에서 만들기 =====
+    // 같은 상태를 읽은 복제본은 같은 id(site 0, clock 1..n)를 가지므로 그대로 이어서 편집할 수 있다
+    public static RgaReplica fromState(DocumentState state, int site) {
+        RgaReplica r = new RgaReplica(site);
+        if (state == null) return r;
+
+        Map<Integer, Integer> imageAt = new HashMap<>();
+        if (state.images != null) {
+            for (ImageState is : state.images) imageAt.put(is.offset, is.id);
+        }
+
+        // 원소마다 바로 앞 원소가 부모인 한 줄짜리 삽입이므로 integrate 대신 순서대로 한 번에 짓는다
+        String text = (state.text == null) ? "" : state.text;
+        List<Elem> order = new ArrayList<>(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            long id = ((long) (i + 1) << SITE_BITS);
+            char ch = text.charAt(i);
+            Integer img = (ch == IMAGE_PLACEHOLDER) ? imageAt.get(i) : null;
+            Elem e = new Elem(id, ch, img == null ? 0 : img);
+            order.add(e);
+            r.byId.put(id, e);
+        }
+        r.build(order);
+        r.visibleCount = text.length();
+        r.clock = text.length();
+        return r;
+    }
+
+    // ===== 바이너리 인코딩 =====
+    // 상태: varint(site) varlong(clock) varint(count) + 원소들
+    // 원소: zigzag(id - 이전 id), flags(1=삭제, 2=이미지), varint(char), [varint(imageId)], [varlong(deletedAt)]
+    private static final int FLAG_DELETED = 1;
+    private static final int FLAG_IMAGE = 2;
+
+    public byte[] encodeState() {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(16 + size(root) * 4);
+            DataOutputStream out = new DataOutputStream(bos);
+            writeVarLong(out, site);
+            writeVarLong(out, clock);
+            writeVarLong(out, size(root));
+
+            long prev = 0;
+            for (Elem e = first(); e != null; e = next(e)) {
+                writeVarLong(out, zigzag(e.id - prev));
+                prev = e.id;
+                int flags = (e.visible() ? 0 : FLAG_DELETED) | (e.imageId != 0 ? FLAG_IMAGE : 0);
+                out.writeByte(flags);
+                writeVarLong(out, e.ch);
+                if (e.imageId != 0) writeVarLong(out, e.imageId);
+                if (!e.visible()) writeVarLong(out, e.deletedAt);
+            }
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // site 를 바꿔 읽으면 다른 복제본으로 이어서 쓸 수 있다 (site < 0 이면 저장된 site 유지)
+    public static RgaReplica decodeState(byte[] data, int site) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int storedSite = (int) readVarLong(in);
+        RgaReplica r = new RgaReplica(site < 0 ? storedSite : site);
+        r.clock = readVarLong(in);
+
+        long n = readVarLong(in);
+        List<Elem> order = new ArrayList<>();
+        long prev = 0;
+        for (long i = 0; i < n; i++) {
+            long id = prev + unzigzag(readVarLong(in));
+            prev = id;
+            int flags = in.readUnsignedByte();
+            char ch = (char) readVarLong(in);
+            int imageId = (flags & FLAG_IMAGE) != 0 ? (int) readVarLong(in) : 0;
+
+            Elem e = new Elem(id, ch, imageId);
+            if ((flags & FLAG_DELETED) != 0) {
+                e.deletedAt = readVarLong(in);
+                r.tombstones++;
+            } else {
+                r.visibleCount++;
+            }
+            order.add(e);
+            r.byId.put(id, e);
+        }
+        r.build(order);
+        return r;
+    }
+
+    // 연산 목록: varint(count) + (kind, varlong id, [varlong parent, varint char, varint imageId] | [varlong clock])
+    public static byte[] encodeOps(List<CrdtOp> ops) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(8 + ops.size() * 8);
+            DataOutputStream out = new DataOutputStream(bos);
+            writeVarLong(out, ops.size());
+            for (CrdtOp op : ops) {
+                out.writeByte(op.kind);
+                writeVarLong(out, op.id);
+                if (op.kind == CrdtOp.INSERT) {
+                    writeVarLong(out, op.parent);
+                    writeVarLong(out, op.ch);
+                    writeVarLong(out, op.imageId);
+                } else {
+                    writeVarLong(out, op.clock);
+                }
+            }
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static List<CrdtOp> decodeOps(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        long n = readVarLong(in);
+        List<CrdtOp> ops = new ArrayList<>();
+        for (long i = 0; i < n; i++) {
+            byte kind = in.readByte();
+            long id = readVarLong(in);
+            if (kind == CrdtOp.INSERT) {
+                long parent = readVarLong(in);
+                char ch = (char) readVarLong(in);
+                int imageId = (int) readVarLong(in);
+                ops.add(CrdtOp.insert(id, parent, ch, imageId));
+            } else if (kind == CrdtOp.DELETE) {
+                ops.add(CrdtOp.delete(id, readVarLong(in)));
+            } else {
+                throw new IOException("unknown crdt op: " + kind);
+            }
+        }
+        return ops;
+    }
+
+    // ===== treap =====
+    private static int size(Elem n) { return n == null ? 0 : n.size; }
+
+    private static int vis(Elem n) { return n == null ? 0 : n.vis; }
+
+    private static int imgs(Elem n) { return n == null ? 0 : n.imgs; }
+
+    private void setRoot(Elem n) {
+        root = n;
+        if (n != null) n.parent = null;
+    }
+
+    // 문서 순서로 놓인 원소들로 트리를 한 번에 짓는다 (오른쪽 가장자리를 스택으로, O(n))
+    private void build(List<Elem> order) {
+        ArrayDeque<Elem> spine = new ArrayDeque<>();
+        for (Elem e : order) {
+            Elem last = null;
+            while (!spine.isEmpty() && spine.peek().priority < e.priority) last = spine.pop();
+            e.left = last;
+            e.right = null;
+            if (!spine.isEmpty()) spine.peek().right = e;
+            spine.push(e);
+        }
+        setRoot(spine.peekLast());
+        updateAll(root);
+    }
+
+    private static void updateAll(Elem n) {
+        if (n == null) return;
+        updateAll(n.left);
+        updateAll(n.right);
+        n.update();
+    }
+
+    private Elem first() {
+        Elem n = root;
+        if (n == null) return null;
+        while (n.left != null) n = n.left;
+        return n;
+    }
+
+    // 문서 순서의 다음 원소
+    private static Elem next(Elem e) {
+        if (e.right != null) {
+            e = e.right;
+            while (e.left != null) e = e.left;
+            return e;
+        }
+        while (e.parent != null && e == e.parent.right) e = e.parent;
+        return e.parent;
+    }
+
+    // 문서 순서 위치 (tombstone 포함, 0부터)
+    private static int rank(Elem e) {
+        int r = size(e.left);
+        for (Elem c = e; c.parent != null; c = c.parent) {
+            if (c == c.parent.right) r += size(c.parent.left) + 1;
+        }
+        return r;
+    }
+
+    // k 번째 보이는 원소 (0부터)
+    private Elem visibleAt(int k) {
+        Elem n = root;
+        while (n != null) {
+            int leftVis = vis(n.left);
+            if (k < leftVis) {
+                n = n.left;
+            } else if (k == leftVis && n.visible()) {
+                return n;
+            } else {
+                k -= leftVis + (n.visible() ? 1 : 0);
+                n = n.right;
+            }
+        }
+        return null;
+    }
+
+    // 앞 k 개 / 나머지
+    private static Elem[] split(Elem n, int k) {
+        if (n == null) return new Elem[]{null, null};
+        if (size(n.left) >= k) {
+            Elem[] p = split(n.left, k);
+            n.left = p[1];
+            n.update();
+            return new Elem[]{p[0], n};
+        }
+        Elem[] p = split(n.right, k - size(n.left) - 1);
+        n.right = p[0];
+        n.update();
+        return new Elem[]{n, p[1]};
+    }
+
+    private static Elem merge(Elem a, Elem b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.update();
+        return b;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+
+    private static long unzigzag(long v) { return (v >>> 1) ^ -(v & 1); }
+}
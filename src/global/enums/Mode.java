@@ -15,5 +15,10 @@ public enum Mode {
     LOCK,
     UNLOCK,
     DOC_DELETED,   // 서버가 "이 문서가 삭제됨"을 알림
-    DOC_LEAVE      // 클라이언트가 문서방에서 나감
+    DOC_LEAVE,     // 클라이언트가 문서방에서 나감
+    BATCH,         // 여러 메시지를 순서대로 담은 묶음 (ops)
+    ACK,           // 서버가 보낸 사람에게 "네 편집이 version 으로 반영됨"을 알림
+    LOCK_STATE,    // 문서의 줄 잠금 전체 (ops: LOCK(userId=소유자, blockId=시작 줄, length=줄 수) 구간들)
+    LOCK_MOVE      // 이 문서에서 내 잠금을 blockId 줄로 옮김 (기존 잠금 해제 + 새 줄 잠금을 한 요청으로).
+                   // 요청: length=1 이면 남이 가진 줄일 때 대기열에 선다. LOCK_STATE 안: 대기자, length=대기 순번
 }
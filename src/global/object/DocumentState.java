@@ -4,6 +4,12 @@ import java.io.Serializable;
 import java.util.List;
 
 public class DocumentState implements Serializable {
+    // 필드 추가 전의 기본값 고정 (기존 state.bin 과 호환)
+    private static final long serialVersionUID = -2187500514320780062L;
+
     public String text;
     public List<ImageState> images;
+
+    // 이 상태에 반영된 마지막 편집 기록 번호 (서버 저널). 불러올 때 이후 기록만 다시 적용한다
+    public long journalSeq;
 }
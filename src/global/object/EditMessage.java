@@ -2,6 +2,7 @@ package global.object;
 
 import global.enums.Mode;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.List;
 
 public class EditMessage implements Serializable {
@@ -23,6 +24,13 @@ public class EditMessage implements Serializable {
     public int height;
     public int newOffset;
 
+    // ===== OT =====
+    // 클라이언트 -> 서버: 편집 기준이 된 서버 버전, 서버 -> 클라이언트: 이 연산(또는 스냅샷/ACK)의 버전
+    public long version;
+
+    // ===== BATCH =====
+    public ArrayList<EditMessage> ops;
+
     public EditMessage(Mode mode, String userId, String text) {
         this.mode = mode;
         this.userId = userId;
@@ -40,6 +48,7 @@ public class EditMessage implements Serializable {
                 ", length=" + length +
                 ", width=" + width +
                 ", height=" + height +
-                ", newOffset=" + newOffset + "]";
+                ", newOffset=" + newOffset +
+                ", version=" + version + "]";
     }
 }
@@ -0,0 +1,245 @@
+package global.ot;
+
+import global.enums.Mode;
+import global.object.EditMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 위치 편집(INSERT/DELETE/IMAGE_INSERT/IMAGE_MOVE)의 OT(operational transformation).
+// 서버(DocumentRoom)와 클라이언트(OtSession)가 같은 규칙을 써야 수렴하므로 global 에 둔다.
+//
+// transform(a, b, aAfter): a와 b가 같은 문서 상태에서 만들어졌을 때,
+// b가 먼저 적용된 문서에서 a와 같은 의도를 내는 연산 목록을 만든다.
+//  - 같은 위치 삽입은 aAfter 쪽이 뒤에 온다 (서버가 나중에 받은 쪽 = aAfter)
+//  - 삭제 구간 안에 동시 삽입이 있으면 삽입 글자는 살리고 삭제를 둘로 나눈다
+//  - 이미지가 옮겨지는 동안 그 이미지를 지우면 삭제가 이긴다
+//  - 같은 이미지를 동시에 옮기면 aAfter 쪽 이동이 최종 위치가 된다
+// IMAGE_RESIZE 등 위치가 없는 메시지는 그대로 둔다.
+public final class OpTransform {
+
+    private OpTransform() {}
+
+    // ===== 기본 연산 =====
+    private static final int INS = 0, DEL = 1, MOVE = 2;
+
+    private static final class Prim {
+        final int kind;
+        final int pos;   // INS/DEL: 위치, MOVE: 원래 위치(from)
+        final int len;   // INS/DEL 길이
+        final int to;    // MOVE: 이미지를 뺀 문서 기준 삽입 위치
+        final int id;    // MOVE: 이미지 id
+
+        Prim(int kind, int pos, int len, int to, int id) {
+            this.kind = kind;
+            this.pos = pos;
+            this.len = len;
+            this.to = to;
+            this.id = id;
+        }
+
+        static Prim ins(int pos, int len) { return new Prim(INS, pos, len, 0, 0); }
+
+        static Prim del(int pos, int len) { return new Prim(DEL, pos, len, 0, 0); }
+
+        static Prim move(int id, int from, int to) { return new Prim(MOVE, from, 1, to, id); }
+
+        int end() { return pos + len; }
+    }
+
+    public static boolean isPositional(Mode mode) {
+        return mode == Mode.INSERT || mode == Mode.DELETE
+                || mode == Mode.IMAGE_INSERT || mode == Mode.IMAGE_MOVE;
+    }
+
+    public static boolean isEdit(Mode mode) {
+        return isPositional(mode) || mode == Mode.IMAGE_RESIZE;
+    }
+
+    // 변환 결과 {a', b'}
+    public static final class Pair<T> {
+        public final List<T> a;
+        public final List<T> b;
+
+        Pair(List<T> a, List<T> b) {
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    // ===== 메시지 목록 변환 =====
+    // a, b 는 각각 순서대로 적용되는 연산 목록. 반환: {a', b'}
+    public static Pair<EditMessage> transform(List<EditMessage> a, List<EditMessage> b, boolean aAfter) {
+        if (a.isEmpty() || b.isEmpty()) return new Pair<>(a, b);
+
+        if (a.size() > 1) {
+            Pair<EditMessage> head = transform(a.subList(0, 1), b, aAfter);
+            Pair<EditMessage> tail = transform(a.subList(1, a.size()), head.b, aAfter);
+            return new Pair<>(concat(head.a, tail.a), tail.b);
+        }
+        if (b.size() > 1) {
+            Pair<EditMessage> head = transform(a, b.subList(0, 1), aAfter);
+            Pair<EditMessage> tail = transform(head.a, b.subList(1, b.size()), aAfter);
+            return new Pair<>(tail.a, concat(head.b, tail.b));
+        }
+
+        EditMessage ma = a.get(0);
+        EditMessage mb = b.get(0);
+        Pair<Prim> p = transformPrims(toPrims(ma), toPrims(mb), aAfter);
+        return new Pair<>(rebuild(ma, p.a), rebuild(mb, p.b));
+    }
+
+    // 단일 메시지 a를 이미 적용된 b 이후로
+    public static List<EditMessage> transform(EditMessage a, EditMessage b, boolean aAfter) {
+        return transform(List.of(a), List.of(b), aAfter).a;
+    }
+
+    private static List<Prim> toPrims(EditMessage m) {
+        List<Prim> out = new ArrayList<>(1);
+        switch (m.mode) {
+            case INSERT -> {
+                int n = (m.text == null) ? 0 : m.text.length();
+                if (n > 0) out.add(Prim.ins(m.offset, n));
+            }
+            case IMAGE_INSERT -> out.add(Prim.ins(m.offset, 1));
+            case DELETE -> {
+                if (m.length > 0) out.add(Prim.del(m.offset, m.length));
+            }
+            case IMAGE_MOVE -> {
+                // newOffset 은 이미지를 빼기 전 좌표 (DocumentManager와 같은 규칙)
+                int to = (m.newOffset > m.offset) ? m.newOffset - 1 : m.newOffset;
+                out.add(Prim.move(m.blockId, m.offset, to));
+            }
+            default -> { }
+        }
+        return out;
+    }
+
+    private static List<EditMessage> rebuild(EditMessage m, List<Prim> prims) {
+        List<EditMessage> out = new ArrayList<>(prims.size());
+        if (!isPositional(m.mode)) {
+            out.add(m);
+            return out;
+        }
+        for (Prim p : prims) {
+            EditMessage c = copy(m);
+            switch (p.kind) {
+                case INS -> c.offset = p.pos;
+                case DEL -> {
+                    c.offset = p.pos;
+                    c.length = p.len;
+                }
+                case MOVE -> {
+                    c.offset = p.pos;
+                    c.newOffset = (p.to >= p.pos) ? p.to + 1 : p.to;
+                }
+            }
+            out.add(c);
+        }
+        return out;
+    }
+
+    public static EditMessage copy(EditMessage m) {
+        EditMessage c = new EditMessage(m.mode, m.userId, m.text);
+        c.docId = m.docId;
+        c.docTitle = m.docTitle;
+        c.payload = m.payload;
+        c.blockId = m.blockId;
+        c.offset = m.offset;
+        c.length = m.length;
+        c.width = m.width;
+        c.height = m.height;
+        c.newOffset = m.newOffset;
+        c.version = m.version;
+        return c;
+    }
+
+    // ===== 기본 연산 목록 변환 =====
+    private static Pair<Prim> transformPrims(List<Prim> a, List<Prim> b, boolean aAfter) {
+        if (a.isEmpty() || b.isEmpty()) return new Pair<>(a, b);
+
+        if (a.size() > 1) {
+            Pair<Prim> head = transformPrims(a.subList(0, 1), b, aAfter);
+            Pair<Prim> tail = transformPrims(a.subList(1, a.size()), head.b, aAfter);
+            return new Pair<>(concat(head.a, tail.a), tail.b);
+        }
+        if (b.size() > 1) {
+            Pair<Prim> head = transformPrims(a, b.subList(0, 1), aAfter);
+            Pair<Prim> tail = transformPrims(head.a, b.subList(1, b.size()), aAfter);
+            return new Pair<>(tail.a, concat(head.b, tail.b));
+        }
+
+        Prim pa = a.get(0);
+        Prim pb = b.get(0);
+        return new Pair<>(transform(pa, pb, aAfter), transform(pb, pa, !aAfter));
+    }
+
+    private static List<Prim> after(List<Prim> a, List<Prim> b, boolean aAfter) {
+        return transformPrims(a, b, aAfter).a;
+    }
+
+    // a를 b 이후로
+    private static List<Prim> transform(Prim a, Prim b, boolean aAfter) {
+        if (b.kind == MOVE) {
+            if (a.kind == MOVE && a.id == b.id) {
+                return aAfter ? List.of(Prim.move(a.id, b.to, a.to)) : List.of();
+            }
+
+            List<Prim> bDel = List.of(Prim.del(b.pos, 1));
+            List<Prim> bIns = List.of(Prim.ins(b.to, 1));
+
+            if (a.kind == DEL && a.pos <= b.pos && b.pos < a.end()) {
+                // 옮겨진 이미지도 새 위치에서 지운다
+                List<Prim> rest = after(after(List.of(a), bDel, aAfter), bIns, aAfter);
+                List<Prim> killMoved = List.of(Prim.del(b.to, 1));
+                return concat(killMoved, after(rest, killMoved, aAfter));
+            }
+            return after(after(List.of(a), bDel, aAfter), bIns, aAfter);
+        }
+
+        if (a.kind == MOVE) {
+            if (b.kind == DEL && b.pos <= a.pos && a.pos < b.end()) return List.of();
+
+            List<Prim> aDel = List.of(Prim.del(a.pos, 1));
+            int from = after(aDel, List.of(b), aAfter).get(0).pos;
+            List<Prim> b1 = after(List.of(b), aDel, !aAfter);
+            int to = after(List.of(Prim.ins(a.to, 1)), b1, aAfter).get(0).pos;
+            return List.of(Prim.move(a.id, from, to));
+        }
+
+        if (a.kind == INS && b.kind == INS) {
+            if (a.pos < b.pos || (a.pos == b.pos && !aAfter)) return List.of(a);
+            return List.of(Prim.ins(a.pos + b.len, a.len));
+        }
+
+        if (a.kind == INS) { // b: DEL
+            if (a.pos <= b.pos) return List.of(a);
+            if (a.pos >= b.end()) return List.of(Prim.ins(a.pos - b.len, a.len));
+            return List.of(Prim.ins(b.pos, a.len));
+        }
+
+        if (b.kind == INS) { // a: DEL
+            if (b.pos >= a.end()) return List.of(a);
+            if (b.pos <= a.pos) return List.of(Prim.del(a.pos + b.len, a.len));
+            int head = b.pos - a.pos;
+            return List.of(Prim.del(a.pos, head), Prim.del(a.pos + b.len, a.len - head));
+        }
+
+        // a: DEL, b: DEL
+        if (a.end() <= b.pos) return List.of(a);
+        if (a.pos >= b.end()) return List.of(Prim.del(a.pos - b.len, a.len));
+        int overlap = Math.min(a.end(), b.end()) - Math.max(a.pos, b.pos);
+        int left = a.len - overlap;
+        if (left <= 0) return List.of();
+        return List.of(Prim.del(Math.min(a.pos, b.pos), left));
+    }
+
+    private static <T> List<T> concat(List<T> x, List<T> y) {
+        if (y.isEmpty()) return x;
+        if (x.isEmpty()) return y;
+        List<T> out = new ArrayList<>(x.size() + y.size());
+        out.addAll(x);
+        out.addAll(y);
+        return out;
+    }
+}
@@ -0,0 +1,266 @@
+package global.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// 문서 안 위치(offset)에 붙은 앵커(이미지 등) 색인. 서버 DocumentManager와 클라이언트 ImageStore가 같이 쓴다.
+// offset 순으로 정렬된 treap에 "서브트리 전체 +delta" 지연 태그를 두어,
+// 텍스트 삽입/삭제에 따른 이동이 앵커 수와 무관하게 O(log n)이다.
+// id -> 노드 맵과 부모 포인터로 id의 현재 offset도 O(log n)에 구한다.
+// 스레드 안전하지 않음 (호출 측 잠금/EDT에서 사용).
+public class AnchorIndex<T> {
+
+    private static final class Node<T> {
+        final int id;
+        T value;
+        int key;     // 조상들의 lazy를 더하면 실제 offset
+        int lazy;    // 자식들에게 아직 내려보내지 않은 이동량
+        final int priority;
+        Node<T> left, right, parent;
+
+        Node(int id, int key, T value) {
+            this.id = id;
+            this.key = key;
+            this.value = value;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    // split 결과: key < k 인 쪽 / 나머지
+    private static final class Split<T> {
+        final Node<T> lo, hi;
+
+        Split(Node<T> lo, Node<T> hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+    }
+
+    public interface Visitor<T> {
+        void visit(int id, int offset, T value);
+    }
+
+    private Node<T> root;
+    private final Map<Integer, Node<T>> byId = new HashMap<>();
+
+    public void clear() {
+        root = null;
+        byId.clear();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public boolean contains(int id) {
+        return byId.containsKey(id);
+    }
+
+    public T get(int id) {
+        Node<T> n = byId.get(id);
+        return n == null ? null : n.value;
+    }
+
+    // 현재 offset (없으면 -1)
+    public int offsetOf(int id) {
+        Node<T> n = byId.get(id);
+        if (n == null) return -1;
+        int off = n.key;
+        for (Node<T> p = n.parent; p != null; p = p.parent) off += p.lazy;
+        return off;
+    }
+
+    // 같은 id가 있으면 위치/값을 교체
+    public void put(int id, int offset, T value) {
+        remove(id);
+
+        Node<T> n = new Node<>(id, offset, value);
+        byId.put(id, n);
+
+        Split<T> p = split(root, offset);
+        root = merge(merge(p.lo, n), p.hi);
+        root.parent = null;
+    }
+
+    public T remove(int id) {
+        Node<T> n = byId.remove(id);
+        if (n == null) return null;
+
+        // 위에서부터 lazy를 내려 n의 key/자식을 확정한 뒤 자식끼리 합쳐 제자리에 끼운다
+        pushPath(n);
+        Node<T> m = merge(n.left, n.right);
+        Node<T> p = n.parent;
+        if (m != null) m.parent = p;
+        if (p == null) root = m;
+        else if (p.left == n) p.left = m;
+        else p.right = m;
+        return n.value;
+    }
+
+    public void move(int id, int newOffset) {
+        Node<T> n = byId.get(id);
+        if (n == null) return;
+        put(id, newOffset, n.value);
+    }
+
+    // offset >= from 인 앵커를 delta 만큼 이동.
+    // delta < 0 이면 [from + delta, from) 구간의 앵커는 먼저 지워져 있어야 순서가 유지된다
+    public void shiftFrom(int from, int delta) {
+        if (delta == 0 || root == null) return;
+
+        Split<T> p = split(root, from);
+        if (p.hi != null) {
+            p.hi.key += delta;
+            p.hi.lazy += delta;
+        }
+        root = merge(p.lo, p.hi);
+        if (root != null) root.parent = null;
+    }
+
+    // [start, end) 에 있는 앵커를 지우고 뒤쪽 앵커를 당긴다 (텍스트 삭제). 지운 값 목록 반환
+    public List<T> removeRange(int start, int end) {
+        List<T> removed = new ArrayList<>();
+        if (start >= end || root == null) return removed;
+
+        Split<T> a = split(root, start);
+        Split<T> b = split(a.hi, end);
+
+        collect(b.lo, removed);
+        Node<T> rest = b.hi;
+        if (rest != null) {
+            rest.key -= (end - start);
+            rest.lazy -= (end - start);
+        }
+        root = merge(a.lo, rest);
+        if (root != null) root.parent = null;
+        return removed;
+    }
+
+    // offset에서 maxDist 이내의 가장 가까운 앵커 (같은 거리면 앞쪽)
+    public T nearest(int offset, int maxDist) {
+        Node<T> floor = null, ceil = null;
+        int floorKey = 0, ceilKey = 0;
+
+        Node<T> t = root;
+        while (t != null) {
+            push(t);
+            if (t.key <= offset) {
+                floor = t;
+                floorKey = t.key;
+                t = t.right;
+            } else {
+                t = t.left;
+            }
+        }
+        t = root;
+        while (t != null) {
+            push(t);
+            if (t.key >= offset) {
+                ceil = t;
+                ceilKey = t.key;
+                t = t.left;
+            } else {
+                t = t.right;
+            }
+        }
+
+        int df = (floor == null) ? Integer.MAX_VALUE : offset - floorKey;
+        int dc = (ceil == null) ? Integer.MAX_VALUE : ceilKey - offset;
+        if (df <= dc && df <= maxDist) return floor.value;
+        if (dc <= maxDist) return ceil.value;
+        return null;
+    }
+
+    // offset 순으로 방문
+    public void forEach(Visitor<T> visitor) {
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        ArrayDeque<Integer> acc = new ArrayDeque<>(); // 각 노드 위 조상 lazy 합
+
+        Node<T> t = root;
+        int sum = 0;
+        while (t != null || !stack.isEmpty()) {
+            while (t != null) {
+                stack.push(t);
+                acc.push(sum);
+                sum += t.lazy;
+                t = t.left;
+            }
+            t = stack.pop();
+            int above = acc.pop();
+            visitor.visit(t.id, t.key + above, t.value);
+            sum = above + t.lazy;
+            t = t.right;
+        }
+    }
+
+    // ===== treap 내부 =====
+    private static <T> void push(Node<T> n) {
+        if (n.lazy == 0) return;
+        if (n.left != null) {
+            n.left.key += n.lazy;
+            n.left.lazy += n.lazy;
+        }
+        if (n.right != null) {
+            n.right.key += n.lazy;
+            n.right.lazy += n.lazy;
+        }
+        n.lazy = 0;
+    }
+
+    private static <T> void pushPath(Node<T> n) {
+        ArrayDeque<Node<T>> path = new ArrayDeque<>();
+        for (Node<T> p = n; p != null; p = p.parent) path.push(p);
+        while (!path.isEmpty()) push(path.pop());
+    }
+
+    // key < k 인 것 / 나머지
+    private static <T> Split<T> split(Node<T> t, int k) {
+        if (t == null) return new Split<>(null, null);
+        push(t);
+
+        if (t.key < k) {
+            Split<T> p = split(t.right, k);
+            t.right = p.lo;
+            if (p.lo != null) p.lo.parent = t;
+            if (p.hi != null) p.hi.parent = null;
+            t.parent = null;
+            return new Split<>(t, p.hi);
+        } else {
+            Split<T> p = split(t.left, k);
+            t.left = p.hi;
+            if (p.hi != null) p.hi.parent = t;
+            if (p.lo != null) p.lo.parent = null;
+            t.parent = null;
+            return new Split<>(p.lo, t);
+        }
+    }
+
+    private static <T> Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+
+        if (a.priority > b.priority) {
+            push(a);
+            a.right = merge(a.right, b);
+            a.right.parent = a;
+            return a;
+        } else {
+            push(b);
+            b.left = merge(a, b.left);
+            b.left.parent = b;
+            return b;
+        }
+    }
+
+    private void collect(Node<T> t, List<T> out) {
+        if (t == null) return;
+        collect(t.left, out);
+        byId.remove(t.id);
+        out.add(t.value);
+        collect(t.right, out);
+    }
+}
@@ -1,51 +1,63 @@
 package server.core;
 
+import global.codec.MessageCodec;
 import global.object.EditMessage;
 import server.ui.ServerDashboardUI;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
-public class ClientHandler extends Thread {
+// 연결 하나의 블로킹 읽기 루프 + 송신 큐를 비우는 writer.
+// 플랫폼 스레드 / 가상 스레드 어느 쪽에서 돌릴지는 Server가 정한다.
+public class ClientHandler implements ClientSession {
+
+    // 스트림 버퍼는 고정 크기라 연결당 보유 메모리가 누적되지 않는다
+    private static final int IO_BUFFER = 8 * 1024;
+
+    private final byte[] scratch = new byte[IO_BUFFER]; // 공유 프레임 → 스트림 복사용 (writer 전용)
 
     private final Socket clientSocket;
     private final Server server;
     private final ServerDashboardUI ui;
+    private final OutboundQueue outbound;
 
-    private ObjectInputStream in;
-    private ObjectOutputStream out;
+    private DataInputStream in;
+    private final MessageCodec.Context rx = new MessageCodec.Context(); // 클라이언트가 보낸 userId/docId (읽기 스레드 전용)
+    // DataOutputStream.write는 synchronized 라 가상 스레드가 소켓 쓰기에서 막히면 캐리어를 붙잡는다
+    private BufferedOutputStream out;
 
     private volatile String currentDocId = null;
     private String userId;
 
-    public ClientHandler(Socket socket, Server server, ServerDashboardUI ui) {
+    public ClientHandler(Socket socket, Server server, ServerDashboardUI ui, OutboundQueue outbound) {
         this.clientSocket = socket;
         this.server = server;
         this.ui = ui;
+        this.outbound = outbound;
 
         try {
-            out = new ObjectOutputStream(socket.getOutputStream());
-            out.flush();
-            in = new ObjectInputStream(socket.getInputStream());
+            out = new BufferedOutputStream(socket.getOutputStream(), IO_BUFFER);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), IO_BUFFER));
         } catch (Exception e) {
             ui.printDisplay("[핸들러 오류] 스트림 생성 실패: " + e.getMessage());
         }
     }
 
-    @Override
-    public void run() {
+    public void start(Thread.Builder threads) {
+        threads.start(this::writeLoop);
+        threads.start(this::readLoop);
+    }
+
+    private void readLoop() {
         try {
             while (true) {
-                EditMessage msg = (EditMessage) in.readObject();
+                EditMessage msg = MessageCodec.readFrame(in, rx);
 
                 if (msg.userId != null && userId == null) {
                     userId = msg.userId;
                 }
 
-                if (msg.docId != null) {
-                    currentDocId = msg.docId;
-                }
-
                 server.handleFromClient(msg, this);
             }
         } catch (Exception e) {
@@ -54,23 +66,73 @@ public class ClientHandler extends Thread {
         }
     }
 
-    public void send(EditMessage msg) {
+    // 소켓 쓰기는 이 스레드만 한다. 쌓인 프레임을 BATCH로 묶어 쓰고 비었을 때 한 번 flush
+    private void writeLoop() {
         try {
-            out.writeObject(msg);
-            out.flush();
+            while (outbound.awaitWork()) {
+                if (outbound.takeResync()) {
+                    server.resync(this);
+                    continue;
+                }
+
+                outbound.linger();
+
+                ByteBuffer frame;
+                while ((frame = outbound.pollBatch()) != null) {
+                    while (frame.hasRemaining()) {
+                        int n = Math.min(scratch.length, frame.remaining());
+                        frame.get(scratch, 0, n);
+                        out.write(scratch, 0, n);
+                    }
+                }
+                out.flush();
+            }
         } catch (Exception e) {
             ui.printDisplay("[전송 오류] " + e.getMessage());
+            close();
+        }
+    }
+
+    @Override
+    public void send(EditMessage msg) {
+        try {
+            sendFrame(MessageCodec.encodeFrame(msg));
+        } catch (IOException e) {
+            ui.printDisplay("[전송 오류] " + e.getMessage());
         }
     }
 
+    @Override
+    public void sendFrame(ByteBuffer frame) {
+        if (!outbound.offer(frame)) {
+            ui.printDisplay("[SERVER] 송신 큐 초과 → 연결 종료");
+            close();
+        }
+    }
+
+    @Override
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        return 3L * IO_BUFFER + outbound.queuedBytes();
+    }
+
+    @Override
     public void close() {
+        outbound.close();
         try { clientSocket.close(); } catch (Exception ignored) {}
     }
 
+    @Override
     public String getCurrentDocId() { return currentDocId; }
 
+    @Override
     public void setCurrentDocId(String docId) { this.currentDocId = docId; }
 
+    @Override
     public String getUserId() {
         return userId;
     }
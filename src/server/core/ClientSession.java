@@ -0,0 +1,60 @@
+package server.core;
+
+import global.codec.MessageCodec;
+import global.object.EditMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// 서버 쪽 클라이언트 연결 하나 (블로킹 ClientHandler / NIO 세션 공통)
+public interface ClientSession {
+
+    // 송신 큐에 넣기만 하고 바로 돌아온다
+    void send(EditMessage msg);
+
+    // 이미 인코딩된 공유 프레임 (encodeShared) 을 그대로 큐에 넣는다
+    void sendFrame(ByteBuffer frame);
+
+    // 여러 연결에 보낼 프레임을 한 번만 인코딩 (브로드캐스트용). 실패하면 남기고 null
+    static ByteBuffer encodeShared(EditMessage msg) {
+        try {
+            return MessageCodec.sharedFrame(msg);
+        } catch (IOException e) {
+            System.out.println("[전송 오류] " + msg.mode + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 송신 큐 초과(RESYNC) 후 대기 중인 메시지를 재동기화 스냅샷으로 교체 (이 연결 하나에만 가므로 공유 프레임이 아니다)
+    default void resetOutbound(List<EditMessage> msgs) {
+        List<ByteBuffer> frames = new ArrayList<>(msgs.size());
+        for (EditMessage m : msgs) {
+            try {
+                frames.add(MessageCodec.encodeFrame(m));
+            } catch (IOException e) {
+                System.out.println("[전송 오류] " + m.mode + ": " + e.getMessage());
+            }
+        }
+        getOutbound().replaceAll(frames);
+    }
+
+    OutboundQueue getOutbound();
+
+    // 이 연결의 요청을 처리하는 스레드가 디스크를 기다려도 되는지 (NIO 이벤트 루프는 안 된다)
+    default boolean mayBlock() {
+        return true;
+    }
+
+    void close();
+
+    String getCurrentDocId();
+
+    void setCurrentDocId(String docId);
+
+    String getUserId();
+
+    // 이 연결이 붙잡고 있는 송수신 버퍼 바이트 수 (대시보드 지표)
+    long getRetainedBytes();
+}
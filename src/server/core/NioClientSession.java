@@ -0,0 +1,219 @@
+package server.core;
+
+import global.codec.MessageCodec;
+import global.object.EditMessage;
+import server.ui.ServerDashboardUI;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// NIO 모드의 연결 하나. 논블로킹 읽기 + 연결별 프레임 디코딩, 송신은 OutboundQueue에 쌓고 이벤트 루프가 비운다.
+public class NioClientSession implements ClientSession {
+
+    private static final int INITIAL_READ_BUFFER = 8 * 1024;
+    // 이미지 프레임 때문에 커진 읽기 버퍼는 프레임 처리 후 이 크기를 넘으면 다시 줄인다
+    private static final int MAX_IDLE_READ_BUFFER = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private final Server server;
+    private final ServerDashboardUI ui;
+    private final OutboundQueue outbound;
+
+    private final AtomicBoolean disconnected = new AtomicBoolean(false);
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private ByteBuffer readBuf = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+    private final MessageCodec.Context rx = new MessageCodec.Context(); // 클라이언트가 보낸 userId/docId (이벤트 루프 전용)
+    private ByteBuffer pendingFrame; // 아직 다 못 쓴 프레임 (이벤트 루프 전용)
+    private SelectionKey key;
+
+    private volatile String currentDocId = null;
+    private volatile String userId;
+
+    public NioClientSession(SocketChannel channel, NioEventLoop loop, Server server,
+                            ServerDashboardUI ui, OutboundQueue outbound) {
+        this.channel = channel;
+        this.loop = loop;
+        this.server = server;
+        this.ui = ui;
+        this.outbound = outbound;
+    }
+
+    // ===== 이벤트 루프 콜백 =====
+    void onRegistered(SelectionKey key) {
+        this.key = key;
+        flush();
+    }
+
+    void onReadable() throws IOException {
+        int n = channel.read(readBuf);
+        if (n < 0) throw new EOFException();
+
+        readBuf.flip();
+        while (readBuf.remaining() >= MessageCodec.HEADER_SIZE) {
+            int len = readBuf.getInt(readBuf.position());
+            MessageCodec.checkLength(len);
+
+            int frameSize = MessageCodec.HEADER_SIZE + len;
+            if (readBuf.remaining() < frameSize) {
+                ensureReadCapacity(frameSize);
+                break;
+            }
+
+            int bodyStart = readBuf.position() + MessageCodec.HEADER_SIZE;
+            EditMessage msg = MessageCodec.decode(readBuf.array(), readBuf.arrayOffset() + bodyStart, len, rx);
+            readBuf.position(bodyStart + len);
+
+            dispatch(msg);
+        }
+        readBuf.compact();
+        shrinkReadBufferIfIdle();
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    void onDisconnected() {
+        if (!disconnected.compareAndSet(false, true)) return;
+        outbound.close();
+        ui.printDisplay("[클라이언트 종료] 연결이 끊어졌습니다.");
+        server.onClientDisconnected(this);
+    }
+
+    private void dispatch(EditMessage msg) {
+        if (msg.userId != null && userId == null) {
+            userId = msg.userId;
+        }
+
+        server.handleFromClient(msg, this);
+    }
+
+    // flip 상태의 readBuf: 받다 만 프레임이 버퍼를 꽉 채웠을 때만 두 배로 (frameSize 까지) 늘린다.
+    // 길이 헤더만 보내고 멈춘 연결이 본문 크기만큼의 버퍼를 미리 잡게 하지 않는다 (덜 찼으면 compact 가 자리를 낸다)
+    private void ensureReadCapacity(int frameSize) {
+        if (readBuf.capacity() >= frameSize || readBuf.remaining() < readBuf.capacity()) return;
+        ByteBuffer bigger = ByteBuffer.allocate((int) Math.min(frameSize, 2L * readBuf.capacity()));
+        bigger.put(readBuf);
+        bigger.flip();
+        readBuf = bigger;
+    }
+
+    // compact 상태(position = 남은 데이터 길이)에서 호출.
+    // 받다 만 프레임이 있으면 줄이지 않는다 (큰 프레임을 받는 동안 늘렸다 줄였다를 반복하게 된다)
+    private void shrinkReadBufferIfIdle() {
+        if (readBuf.capacity() <= MAX_IDLE_READ_BUFFER) return;
+        if (readBuf.position() > 0) return;
+
+        ByteBuffer small = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+        readBuf.flip();
+        small.put(readBuf);
+        readBuf = small;
+    }
+
+    // 이벤트 루프 스레드에서만 호출
+    private void flush() {
+        if (key == null || !key.isValid()) return;
+        try {
+            while (true) {
+                if (pendingFrame == null) {
+                    // 프레임 경계에서만 재동기화 (쓰다 만 프레임은 끝까지 보낸다)
+                    if (outbound.takeResync()) server.resync(this);
+
+                    pendingFrame = outbound.pollBatch();
+                    if (pendingFrame == null) break;
+                }
+
+                channel.write(pendingFrame);
+                if (pendingFrame.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                pendingFrame = null;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            onDisconnected();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (loop.inEventLoop()) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    // ===== ClientSession =====
+    @Override
+    public void send(EditMessage msg) {
+        try {
+            sendFrame(MessageCodec.encodeFrame(msg));
+        } catch (IOException e) {
+            ui.printDisplay("[전송 오류] " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void sendFrame(ByteBuffer frame) {
+        if (disconnected.get()) return;
+        if (!outbound.offer(frame)) {
+            ui.printDisplay("[SERVER] 송신 큐 초과 → 연결 종료");
+            close();
+            loop.execute(this::onDisconnected);
+            return;
+        }
+        scheduleFlush();
+    }
+
+    // 스냅샷은 방의 outbox 스레드에서 들어오므로 교체 후 이벤트 루프에 flush를 맡긴다
+    @Override
+    public void resetOutbound(List<EditMessage> msgs) {
+        ClientSession.super.resetOutbound(msgs);
+        scheduleFlush();
+    }
+
+    @Override
+    public OutboundQueue getOutbound() {
+        return outbound;
+    }
+
+    // 요청은 이벤트 루프에서 처리되므로 디스크 작업은 Server 가 I/O 스레드로 넘긴다
+    @Override
+    public boolean mayBlock() {
+        return false;
+    }
+
+    @Override
+    public long getRetainedBytes() {
+        ByteBuffer pending = pendingFrame;
+        return readBuf.capacity() + outbound.queuedBytes() + (pending == null ? 0 : pending.remaining());
+    }
+
+    @Override
+    public void close() {
+        if (key != null) key.cancel();
+        try { channel.close(); } catch (Exception ignored) {}
+    }
+
+    @Override
+    public String getCurrentDocId() { return currentDocId; }
+
+    @Override
+    public void setCurrentDocId(String docId) { this.currentDocId = docId; }
+
+    @Override
+    public String getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,102 @@
+package server.core;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Selector 하나를 소유하는 이벤트 루프 스레드.
+// 등록된 세션들의 읽기/쓰기와 interestOps 변경은 모두 이 스레드에서만 일어난다.
+public class NioEventLoop implements Runnable {
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final String name;
+    private volatile Thread thread;
+
+    private volatile boolean running = true;
+
+    public NioEventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.name = name;
+    }
+
+    // 만든 쪽이 생성 뒤에 부른다
+    public void start() {
+        Thread t = Thread.ofPlatform().name(name).daemon(true).unstarted(this);
+        thread = t;
+        t.start();
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) selector.wakeup();
+    }
+
+    public void register(SocketChannel channel, NioClientSession session) {
+        execute(() -> {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ, session);
+                session.onRegistered(key);
+            } catch (IOException e) {
+                session.onDisconnected();
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    NioClientSession session = (NioClientSession) key.attachment();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isReadable()) session.onReadable();
+                        if (key.isValid() && key.isWritable()) session.onWritable();
+                    } catch (Exception e) {
+                        session.onDisconnected();
+                    }
+                }
+            } catch (Exception e) {
+                if (running) System.out.println("[NIO 오류] " + e.getMessage());
+            }
+        }
+        closeAll();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try { task.run(); } catch (Exception ignored) {}
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeAll() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                try { key.channel().close(); } catch (Exception ignored) {}
+            }
+            selector.close();
+        } catch (Exception ignored) {}
+    }
+}
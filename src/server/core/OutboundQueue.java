@@ -0,0 +1,229 @@
+package server.core;
+
+import global.codec.MessageCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 연결 하나의 송신 큐. 브로드캐스트하는 쪽은 offer만 하고 바로 돌아가며, 실제 소켓 쓰기는
+// 연결 전용 writer(블로킹 모드) 또는 이벤트 루프(NIO)가 비운다.
+// 큐에는 이미 인코딩된 프레임이 들어가며, 같은 공유 프레임을 연결마다 duplicate() 해서 보관한다.
+// 꺼낼 때는 쌓여 있는 작은 프레임들을 BATCH 프레임 하나로 묶어 write/flush 횟수를 줄인다.
+public class OutboundQueue {
+
+    public enum OverflowPolicy {
+        RESYNC,     // 큐를 비우고 FULL_SYNC 스냅샷으로 대체
+        DISCONNECT; // 연결 종료
+
+        public static OverflowPolicy parse(String s) {
+            return "disconnect".equalsIgnoreCase(s) ? DISCONNECT : RESYNC;
+        }
+    }
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final int batchMaxBytes; // 묶음 하나의 최대 크기 (이보다 큰 프레임은 단독 전송)
+    private final int batchTickMs;   // > 0 이면 첫 프레임 후 이만큼 더 모은 뒤 보낸다
+
+    private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private boolean resyncPending = false;
+    private boolean resyncStarted = false; // writer가 재동기화를 요청했고 스냅샷(replaceAll)을 기다리는 중
+    private boolean closed = false;
+
+    // ===== 지표 =====
+    private int highWater = 0;
+    private long queuedBytes = 0;
+    private long dropped = 0;
+    private long overflows = 0;
+    private long batches = 0;
+
+    public OutboundQueue(int capacity, OverflowPolicy policy, int batchMaxBytes, int batchTickMs) {
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.batchMaxBytes = batchMaxBytes;
+        this.batchTickMs = batchTickMs;
+    }
+
+    // false 면 DISCONNECT 정책으로 넘쳤다는 뜻 (호출 측에서 연결 종료)
+    public boolean offer(ByteBuffer frame) {
+        lock.lock();
+        try {
+            if (closed) return true;
+            if (resyncPending) {
+                // 곧 보낼 스냅샷에 포함되므로 버린다
+                dropped++;
+                return true;
+            }
+            if (queue.size() >= capacity) {
+                overflows++;
+                dropped += queue.size() + 1;
+                clearQueue();
+                if (policy == OverflowPolicy.DISCONNECT) return false;
+
+                resyncPending = true;
+                notEmpty.signal();
+                return true;
+            }
+
+            ByteBuffer own = frame.duplicate();
+            queue.addLast(own);
+            queuedBytes += own.remaining();
+            if (queue.size() > highWater) highWater = queue.size();
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 재동기화 스냅샷으로 큐 내용을 통째로 교체 (용량 제한 무시)
+    public void replaceAll(List<ByteBuffer> frames) {
+        lock.lock();
+        try {
+            clearQueue();
+            for (ByteBuffer f : frames) {
+                ByteBuffer own = f.duplicate();
+                queue.addLast(own);
+                queuedBytes += own.remaining();
+            }
+            resyncPending = false;
+            resyncStarted = false;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ByteBuffer poll() {
+        lock.lock();
+        try {
+            ByteBuffer f = queue.pollFirst();
+            if (f != null) queuedBytes -= f.remaining();
+            return f;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 다음에 쓸 프레임. 뒤에 작은 프레임들이 쌓여 있으면 BATCH 하나로 묶어서 돌려준다.
+    // 묶음을 다 만든 뒤에야 큐에서 빼므로, 묶다 실패해도 잃는 프레임이 없다 (그때는 하나씩 보낸다)
+    public ByteBuffer pollBatch() {
+        lock.lock();
+        try {
+            ByteBuffer first = queue.peekFirst();
+            if (first == null || first.remaining() > batchMaxBytes) return poll();
+
+            List<ByteBuffer> frames = new ArrayList<>();
+            int bytes = 0;
+            for (ByteBuffer f : queue) {
+                if (bytes + f.remaining() > batchMaxBytes) break;
+                frames.add(f);
+                bytes += f.remaining();
+            }
+            if (frames.size() == 1) return poll();
+
+            ByteBuffer batch;
+            try {
+                batch = MessageCodec.batchFrame(frames);
+            } catch (IOException e) {
+                return poll();
+            }
+            for (int i = 0; i < frames.size(); i++) poll();
+            batches++;
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // batch.tick.ms 동안 (또는 한 묶음 분량이 찰 때까지) 프레임이 더 쌓이기를 기다린다
+    public void linger() throws InterruptedException {
+        if (batchTickMs <= 0) return;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTickMs);
+
+        lock.lock();
+        try {
+            long left;
+            while (!closed && !resyncPending && queuedBytes < batchMaxBytes
+                    && (left = deadline - System.nanoTime()) > 0) {
+                notEmpty.awaitNanos(left);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 보낼 메시지가 있거나 재동기화가 필요할 때까지 대기. 닫히면 false
+    public boolean awaitWork() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!closed && queue.isEmpty() && !(resyncPending && !resyncStarted)) notEmpty.await();
+            return !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 재동기화가 필요하면 true 를 한 번만 돌려준다. 스냅샷은 방에서 비동기로 만들어 replaceAll 로 들어온다
+    public boolean takeResync() {
+        lock.lock();
+        try {
+            if (!resyncPending || resyncStarted) return false;
+            resyncStarted = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            clearQueue();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void clearQueue() {
+        queue.clear();
+        queuedBytes = 0;
+    }
+
+    public long queuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int depth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int highWater() { return highWater; }
+
+    public long dropped() { return dropped; }
+
+    public long overflows() { return overflows; }
+
+    public long batches() { return batches; }
+}
@@ -1,92 +1,195 @@
 package server.core;
 
-import client.ui.LineLockManager;
+import global.config.ConfigReader;
 import global.enums.Mode;
 import global.object.DocumentMeta;
 import global.object.EditMessage;
+import global.ot.OpTransform;
 import server.document.DocumentService;
+import server.lock.LineLockService;
 import server.storage.DocumentStorage;
+import server.storage.GroupCommit;
+import server.storage.PersistenceService;
 import server.ui.ServerDashboardUI;
 
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Server {
 
     private final int port;
     private final ServerDashboardUI ui;
 
-    private final DocumentStorage storage = new DocumentStorage();
-    private final DocumentService docService = new DocumentService(storage);
+    // io=thread (연결당 플랫폼 스레드, 기본) | io=virtual (연결당 가상 스레드) | io=nio (Selector 이벤트 루프)
+    private final String ioMode;
+    private final int nioThreads;
+
+    // 연결별 송신 큐: outbound.capacity (메시지 수), outbound.overflow=resync|disconnect
+    private final int outboundCapacity;
+    private final OutboundQueue.OverflowPolicy overflowPolicy;
+
+    // 송신 묶음(BATCH): batch.max.bytes, batch.tick.ms (블로킹 writer가 더 모으는 시간)
+    private final int batchMaxBytes;
+    private final int batchTickMs;
+
+    private final GroupCommit commit;
+    private final DocumentStorage storage;
+    private final DocumentService docService;
 
     private volatile boolean running = false;
     private ServerSocket serverSocket;
+    private ServerSocketChannel serverChannel;
+    private NioEventLoop[] eventLoops;
 
-    private final List<ClientHandler> handlers = new ArrayList<>();
-    private final LineLockManager lockManager = new LineLockManager();
+    // 전체 연결 목록: 문서 목록 브로드캐스트 / 종료 / 지표에만 쓴다.
+    // 문서 단위 전송(편집, 락, 삭제 알림)은 DocumentRoom의 멤버 인덱스를 탄다.
+    private final Set<ClientSession> handlers = ConcurrentHashMap.newKeySet();
+    private final LineLockService lockService;
+    private final PersistenceService persistence;
 
-    public Server(int port, ServerDashboardUI ui) {
-        this.port = port;
+    public Server(ConfigReader.ServerConfig config, ServerDashboardUI ui) {
+        this.port = config.port;
         this.ui = ui;
+        this.ioMode = config.get("io", "thread");
+        this.nioThreads = config.getInt("nio.threads", Runtime.getRuntime().availableProcessors());
+        this.outboundCapacity = config.getInt("outbound.capacity", 1024);
+        this.overflowPolicy = OutboundQueue.OverflowPolicy.parse(config.get("outbound.overflow", "resync"));
+        this.batchMaxBytes = config.getInt("batch.max.bytes", 64 * 1024);
+        this.batchTickMs = config.getInt("batch.tick.ms", 0);
+        // storage.fsync: 저장 파일 교체/편집 기록을 디스크까지. force 중에 들어온 요청은 다음 묶음이 되고,
+        // storage.fsync.window.ms 를 주면 그만큼 더 모은다 (fsync 는 줄고 ACK 는 늦어진다)
+        this.commit = "false".equalsIgnoreCase(config.get("storage.fsync", "true"))
+                ? GroupCommit.disabled()
+                : new GroupCommit(true, config.getInt("storage.fsync.window.ms", 0));
+        this.storage = new DocumentStorage("data", commit);
+        // lock.lease.ms: 편집/잠금 요청 없이 이만큼 지나면 그 문서의 잠금을 푼다 (0 이면 끄기)
+        this.lockService = new LineLockService(config.getInt("lock.lease.ms", 30000),
+                config.getInt("lock.lease.tick.ms", 100));
+        // persist.delay.ms: 첫 변경 뒤 이만큼 모았다가 문서당 한 번 저장, persist.threads: 저장 I/O 스레드 수
+        this.persistence = new PersistenceService(storage, config.getInt("persist.threads", 2),
+                config.getInt("persist.delay.ms", 1000));
+        this.docService = new DocumentService(storage, persistence, lockService, config.get("engine", "rope"),
+                config.getInt("room.threads", Runtime.getRuntime().availableProcessors()),
+                config.getInt("lock.tick.ms", 50),
+                // storage=journal: 편집마다 ops.log 에 덧붙이고 journal.checkpoint.bytes 마다 state.bin 으로 정리
+                "journal".equalsIgnoreCase(config.get("storage", "snapshot"))
+                        ? Math.max(1, config.getInt("journal.checkpoint.bytes", 4 * 1024 * 1024)) : 0);
     }
 
     public void startServer() {
         try {
             running = true;
-            serverSocket = new ServerSocket(port);
-            ui.printDisplay("[SERVER] 서버 시작 (port=" + port + ")");
+            if ("nio".equalsIgnoreCase(ioMode)) startNioServer();
+            else startThreadServer("virtual".equalsIgnoreCase(ioMode));
+        } catch (Exception e) {
+            if (running) ui.printDisplay("[서버 오류] " + e.getMessage());
+        }
+    }
 
-            while (running) {
-                Socket socket = serverSocket.accept();
-                ui.printDisplay("[SERVER] 클라이언트 연결");
+    private void startThreadServer(boolean virtual) throws Exception {
+        Thread.Builder threads = virtual
+                ? Thread.ofVirtual().name("client-v-", 0)
+                : Thread.ofPlatform().name("client-", 0);
 
-                ClientHandler handler = new ClientHandler(socket, this, ui);
-                synchronized (handlers) { handlers.add(handler); }
+        serverSocket = new ServerSocket(port);
+        ui.printDisplay("[SERVER] 서버 시작 (port=" + port + (virtual ? ", virtual threads" : "") + ")");
 
-                sendDocListTo(handler);
-                handler.start();
-            }
-        } catch (Exception e) {
-            if (running) ui.printDisplay("[서버 오류] " + e.getMessage());
+        while (running) {
+            Socket socket = serverSocket.accept();
+            ui.printDisplay("[SERVER] 클라이언트 연결");
+
+            ClientHandler handler = new ClientHandler(socket, this, ui, newOutboundQueue());
+            handlers.add(handler);
+
+            sendDocListTo(handler);
+            handler.start(threads);
+        }
+    }
+
+    // accept는 이 스레드에서, 읽기/쓰기는 고정 개수의 이벤트 루프가 라운드로빈으로 나눠 맡는다
+    private void startNioServer() throws Exception {
+        int n = Math.max(1, nioThreads);
+        eventLoops = new NioEventLoop[n];
+        for (int i = 0; i < n; i++) {
+            eventLoops[i] = new NioEventLoop("nio-loop-" + i);
+            eventLoops[i].start();
         }
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        ui.printDisplay("[SERVER] 서버 시작 (port=" + port + ", nio loops=" + n + ")");
+
+        int next = 0;
+        while (running) {
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ui.printDisplay("[SERVER] 클라이언트 연결");
+
+            NioEventLoop loop = eventLoops[next++ % n];
+            NioClientSession session = new NioClientSession(channel, loop, this, ui, newOutboundQueue());
+            handlers.add(session);
+
+            sendDocListTo(session);
+            loop.register(channel, session);
+        }
+    }
+
+    private OutboundQueue newOutboundQueue() {
+        return new OutboundQueue(outboundCapacity, overflowPolicy, batchMaxBytes, batchTickMs);
     }
 
     public void disconnect() {
         running = false;
         try {
-            synchronized (handlers) {
-                for (ClientHandler h : handlers) {
-                    try { h.close(); } catch (Exception ignored) {}
-                }
-                handlers.clear();
+            for (ClientSession h : handlers) {
+                try { h.close(); } catch (Exception ignored) {}
             }
+            handlers.clear();
             if (serverSocket != null) serverSocket.close();
+            if (serverChannel != null) serverChannel.close();
+            if (eventLoops != null) {
+                for (NioEventLoop loop : eventLoops) loop.shutdown();
+                eventLoops = null;
+            }
+            // 모아 둔 변경을 디스크에 남기고 끝낸다
+            persistence.flushAll();
         } catch (Exception e) {
             ui.printDisplay("[서버 종료 오류] " + e.getMessage());
         }
     }
 
-    public void handleFromClient(EditMessage msg, ClientHandler sender) {
+    public void handleFromClient(EditMessage msg, ClientSession sender) {
         if (msg == null || msg.mode == null) return;
 
         ui.printDisplay("[FROM CLIENT] " + msg);
 
         switch (msg.mode) {
-            case LOCK -> handleLock(msg);
-            case UNLOCK -> handleUnlock(msg);
+            case LOCK -> docService.lock(msg, sender);
+            case UNLOCK -> docService.unlock(msg, sender);
+            case LOCK_MOVE -> docService.moveLock(msg, sender);
 
-            case DOC_LIST -> sendDocListTo(sender);
+            case DOC_LIST -> sendDocListTo(sender); // 목록은 캐시에서 (디스크를 읽지 않는다)
 
             case DOC_OPEN -> {
                 if (msg.docId != null) docService.open(msg.docId, sender);
             }
 
             case DOC_CREATE -> {
-                DocumentMeta created = docService.create(msg.docTitle);
-                broadcastDocListToAll();
-                docService.open(created.id, sender);
+                // 생성은 메타/상태 파일을 fsync 까지 기다린다 (storage.fsync)
+                runBlocking(sender, () -> {
+                    DocumentMeta created = docService.create(msg.docTitle);
+                    broadcastDocListToAll();
+                    docService.open(created.id, sender);
+                });
             }
 
             case DOC_LEAVE -> {
@@ -96,78 +199,126 @@ public class Server {
 
             case DOC_DELETE -> {
                 if (msg.docId == null) return;
-
-                String deletedId = msg.docId;
-
-                // 1) 삭제 수행
-                docService.delete(deletedId);
-
-                // 2) 목록 갱신 브로드캐스트 (모든 클라이언트)
-                broadcastDocListToAll();
-
-                // 3) 삭제된 문서를 보고 있던 클라이언트들은 "다른 문서로 강제 이동"시키지 말고
-                //    DOC_DELETED 이벤트만 보내고 room에서 빼기
-                synchronized (handlers) {
-                    for (ClientHandler h : handlers) {
-                        if (deletedId.equals(h.getCurrentDocId())) {
-                            docService.leave(h);
-
-                            EditMessage del = new EditMessage(Mode.DOC_DELETED, "server", null);
-                            del.docId = deletedId;
-                            h.send(del);
-                        }
-                    }
-                }
+                runBlocking(sender, () -> deleteDoc(msg.docId));
             }
 
             case INSERT, DELETE, IMAGE_INSERT, IMAGE_RESIZE, IMAGE_MOVE -> {
                 docService.applyEdit(msg, sender);
             }
 
+            case BATCH -> {
+                if (msg.ops == null || msg.ops.isEmpty()) return;
+                if (isEditBatch(msg.ops)) {
+                    // 같은 기준 버전의 연속 편집은 한 번에 변환/적용
+                    docService.applyEdits(msg.ops, sender);
+                } else {
+                    for (EditMessage op : msg.ops) handleFromClient(op, sender);
+                }
+            }
+
             default -> {}
         }
     }
 
-    private void handleLock(EditMessage msg) {
-        String docId = msg.docId;
-        int lineIndex = msg.blockId;
-        String userId = msg.userId;
-
-        String owner = lockManager.tryLock(docId, lineIndex, userId);
-        EditMessage resp = new EditMessage(Mode.LOCK, owner, null);
-        resp.docId = docId;
-        resp.blockId = lineIndex;
-        resp.userId = owner;
-
-        broadcastToDoc(docId, resp);
+    // 디스크를 기다리는 요청: NIO 이벤트 루프에서 왔으면 저장 I/O 스레드로 넘긴다
+    // (느린 디스크 하나가 그 루프의 모든 연결을 세우지 않게). 결과는 sendFrame 으로 큐에 넣고 보내기는 루프가 한다
+    private void runBlocking(ClientSession sender, Runnable task) {
+        if (sender.mayBlock()) {
+            task.run();
+            return;
+        }
+        persistence.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                ui.printDisplay("[서버 오류] " + e.getMessage());
+            }
+        });
     }
 
-    private void handleUnlock(EditMessage msg) {
-        String docId = msg.docId;
-        int lineIndex = msg.blockId;
-        String userId = msg.userId;
+    private void deleteDoc(String deletedId) {
+        // 1) 삭제 수행 (room 멤버였던 클라이언트들은 room에서 빠진다, 줄 잠금도 함께 정리)
+        List<ClientSession> viewers = docService.delete(deletedId);
 
-        lockManager.unlock(docId, lineIndex, userId);
+        // 2) 목록 갱신 브로드캐스트 (모든 클라이언트)
+        broadcastDocListToAll();
 
-        EditMessage resp = new EditMessage(Mode.UNLOCK, userId, null);
-        resp.docId = docId;
-        resp.blockId = lineIndex;
-        resp.userId = userId;
+        // 3) 삭제된 문서를 보고 있던 클라이언트들은 "다른 문서로 강제 이동"시키지 말고
+        //    DOC_DELETED 이벤트만 보낸다
+        EditMessage del = new EditMessage(Mode.DOC_DELETED, "server", null);
+        del.docId = deletedId;
+        ByteBuffer frame = ClientSession.encodeShared(del);
+        if (frame != null) {
+            for (ClientSession h : viewers) h.sendFrame(frame);
+        }
+    }
 
-        broadcastToDoc(docId, resp);
+    private static boolean isEditBatch(List<EditMessage> ops) {
+        for (EditMessage op : ops) {
+            if (op == null || op.mode == null || !OpTransform.isEdit(op.mode)) return false;
+        }
+        return true;
     }
 
-    public void onClientDisconnected(ClientHandler h) {
+    public void onClientDisconnected(ClientSession h) {
         try { h.close(); } catch (Exception ignored) {}
         docService.leave(h);
 
-        String userId = h.getUserId();
-        lockManager.releaseAllByUser(userId);
+        // 끊긴 사용자의 잠금을 풀고 그 문서 멤버들에게 알린다
+        docService.releaseLocks(h.getUserId());
+
+        handlers.remove(h);
+    }
+
+    // 송신 큐가 넘친 연결(RESYNC 정책): 문서 목록 + 현재 문서 스냅샷(잠금 상태 포함)을 다시 보낸다
+    public void resync(ClientSession h) {
+        ui.printDisplay("[SERVER] 송신 큐 초과 → 재동기화 (user=" + h.getUserId() + ")");
+
+        EditMessage docList = new EditMessage(Mode.DOC_LIST, "server", null);
+        docList.docs = docService.listDocs();
+
+        if (!docService.resync(h, List.of(docList))) {
+            h.resetOutbound(List.of(docList));
+        }
+    }
+
+    // 연결들이 붙잡은 송수신 버퍼 합계 (대시보드 지표와 같은 값)
+    public long retainedBytes() {
+        long total = 0;
+        for (ClientSession h : handlers) total += h.getRetainedBytes();
+        return total;
+    }
 
-        synchronized (handlers) { handlers.remove(h); }
+    // 대시보드 상단 지표
+    public String statsLine() {
+        long total = 0, max = 0, overflows = 0, batches = 0;
+        int maxDepth = 0, highWater = 0;
+        for (ClientSession h : handlers) {
+            long b = h.getRetainedBytes();
+            total += b;
+            max = Math.max(max, b);
+
+            OutboundQueue q = h.getOutbound();
+            maxDepth = Math.max(maxDepth, q.depth());
+            highWater = Math.max(highWater, q.highWater());
+            overflows += q.overflows();
+            batches += q.batches();
+        }
+        return "연결 " + handlers.size()
+                + " | 연결 버퍼 " + (total / 1024) + "KB (최대 " + (max / 1024) + "KB)"
+                + " | 송신 큐 최대 " + maxDepth + " (최고 " + highWater + ")"
+                + " | 큐 초과 " + overflows
+                + " | 묶음 전송 " + batches
+                + " | 줄 잠금 " + lockService.lockCount() + " (문서 " + lockService.docCount()
+                + ", 대기 " + lockService.waiterCount() + ")"
+                + " | 임대 " + lockService.leaseCount()
+                + " | 임대 만료 " + lockService.expiredTotal() + " (최근 1분 " + lockService.expiredLastMinute() + ")"
+                + " | 저장 " + persistence.saveCount() + "회 (대기 " + persistence.pendingCount()
+                + ", 합침 " + persistence.coalescedCount() + ", 평균 " + persistence.avgSaveMs() + "ms)"
+                + " | fsync " + commit.forceCount() + "회 (요청 " + commit.requestCount() + ")";
     }
 
-    private void sendDocListTo(ClientHandler h) {
+    private void sendDocListTo(ClientSession h) {
         EditMessage res = new EditMessage(Mode.DOC_LIST, "server", null);
         res.docs = docService.listDocs();
         h.send(res);
@@ -177,18 +328,8 @@ public class Server {
         EditMessage res = new EditMessage(Mode.DOC_LIST, "server", null);
         res.docs = docService.listDocs();
 
-        synchronized (handlers) {
-            for (ClientHandler h : handlers) h.send(res);
-        }
-    }
-
-    private void broadcastToDoc(String docId, EditMessage msg) {
-        synchronized (handlers) {
-            for (ClientHandler h : handlers) {
-                if (docId != null && docId.equals(h.getCurrentDocId())) {
-                    h.send(msg);
-                }
-            }
-        }
+        ByteBuffer frame = ClientSession.encodeShared(res);
+        if (frame == null) return;
+        for (ClientSession h : handlers) h.sendFrame(frame);
     }
 }
@@ -17,13 +17,14 @@ public class ServerMain {
             return;
         }
 
-        Server server = new Server(config.port, ui);
+        Server server = new Server(config, ui);
 
         ui.setOnStartServer(() -> {
             Thread serverThread = new Thread(server::startServer);
             serverThread.start();
         });
         ui.setOnStopServer(() -> server.disconnect());
+        ui.setStatsSupplier(server::statsLine);
 
         ui.printDisplay("[서버 설정 로드 완료]");
         ui.printDisplay("IP : " + config.ip);
@@ -0,0 +1,190 @@
+package server.document;
+
+import global.crdt.RgaReplica;
+import global.enums.Mode;
+import global.object.DocumentState;
+import global.object.EditMessage;
+import global.object.ImageState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// engine=crdt: 서버 복제본을 RGA(RgaReplica)로 두는 엔진.
+// 서버가 순번을 매긴 위치 편집을 CRDT 연산으로 바꿔 적용한다 (서버 = site 0).
+// 이미지 자리표시 원소는 imageId 를 갖고, 이미지 바이트/크기는 따로 들고 있다.
+// 복제본이 서버 하나뿐이라 적용된 삭제는 곧바로 안정(stable)하므로 tombstone 이 쌓이면 바로 정리한다.
+public class CrdtDocument implements DocumentEngine {
+
+    private static final int SERVER_SITE = 0;
+    private static final int GC_MIN_TOMBSTONES = 1024;
+    private static final String PLACEHOLDER = String.valueOf(RgaReplica.IMAGE_PLACEHOLDER);
+
+    private RgaReplica replica = new RgaReplica(SERVER_SITE);
+    private final Map<Integer, ImageBlock> images = new HashMap<>();
+    private final LineIndex lines = new LineIndex();
+
+    @Override
+    public void apply(EditMessage msg) {
+        if (msg == null || msg.mode == null) return;
+
+        switch (msg.mode) {
+            case INSERT -> applyInsert(msg);
+            case DELETE -> applyDelete(msg);
+            case FULL_SYNC -> applyFullSync(msg);
+            case IMAGE_INSERT -> applyImageInsert(msg);
+            case IMAGE_RESIZE -> applyImageResize(msg);
+            case IMAGE_MOVE -> applyImageMove(msg);
+            default -> {}
+        }
+        gcIfNeeded();
+    }
+
+    private void applyInsert(EditMessage msg) {
+        if (msg.text == null || msg.text.isEmpty()) return;
+        int offset = clampOffset(msg.offset);
+        replica.insert(offset, msg.text);
+        lines.insert(offset, msg.text);
+    }
+
+    private void applyDelete(EditMessage msg) {
+        int start = clampOffset(msg.offset);
+        int end = clampOffset(msg.offset + msg.length);
+        if (start >= end) return;
+
+        for (int[] img : replica.images()) {
+            if (img[1] >= start && img[1] < end) images.remove(img[0]);
+        }
+        replica.delete(start, end - start);
+        lines.delete(start, end - start);
+    }
+
+    private void applyFullSync(EditMessage msg) {
+        DocumentState s = new DocumentState();
+        s.text = msg.text;
+        replica = RgaReplica.fromState(s, SERVER_SITE);
+        lines.reset(msg.text);
+    }
+
+    private void applyImageInsert(EditMessage msg) {
+        if (msg.payload == null) return;
+        int offset = clampOffset(msg.offset);
+
+        int w = msg.width > 0 ? msg.width : -1;
+        int h = msg.height > 0 ? msg.height : -1;
+        images.put(msg.blockId, new ImageBlock(msg.blockId, offset, w, h, msg.payload));
+        replica.insertImage(offset, msg.blockId);
+        lines.insert(offset, PLACEHOLDER);
+    }
+
+    private void applyImageResize(EditMessage msg) {
+        ImageBlock block = images.get(msg.blockId);
+        if (block == null) return;
+        if (msg.width > 0) block.width = msg.width;
+        if (msg.height > 0) block.height = msg.height;
+    }
+
+    // 이동 = 자리표시 원소 삭제 + 새 위치에 같은 imageId 원소 삽입 (DocumentManager와 같은 좌표 규칙)
+    private void applyImageMove(EditMessage msg) {
+        if (!images.containsKey(msg.blockId)) return;
+
+        int oldOffset = replica.indexOfImage(msg.blockId);
+        if (oldOffset < 0) return;
+        int newOffset = clampOffset(msg.newOffset);
+        if (oldOffset == newOffset) return;
+
+        replica.delete(oldOffset, 1);
+        lines.delete(oldOffset, 1);
+        if (newOffset > oldOffset) newOffset -= 1;
+        newOffset = clampOffset(newOffset);
+        replica.insertImage(newOffset, msg.blockId);
+        lines.insert(newOffset, PLACEHOLDER);
+    }
+
+    private void gcIfNeeded() {
+        int t = replica.tombstoneCount();
+        if (t >= GC_MIN_TOMBSTONES && t >= replica.length() / 2) replica.gc(replica.clock());
+    }
+
+    private int clampOffset(int offset) {
+        if (offset < 0) return 0;
+        return Math.min(offset, replica.length());
+    }
+
+    @Override
+    public int imageOffset(int blockId) {
+        return images.containsKey(blockId) ? replica.indexOfImage(blockId) : -1;
+    }
+
+    @Override
+    public int lineCount() {
+        return lines.lineCount();
+    }
+
+    @Override
+    public int lineOf(int offset) {
+        return lines.lineOf(offset);
+    }
+
+    @Override
+    public int lineStart(int line) {
+        return lines.lineStart(line);
+    }
+
+    @Override
+    public int lineEnd(int line) {
+        return lines.lineEnd(line);
+    }
+
+    @Override
+    public String getDocument() {
+        return replica.text();
+    }
+
+    @Override
+    public List<EditMessage> buildFullImageSyncMessages(String docId, String userId) {
+        List<EditMessage> result = new ArrayList<>();
+        for (int[] img : replica.images()) {
+            ImageBlock b = images.get(img[0]);
+            if (b == null) continue;
+
+            EditMessage msg = new EditMessage(Mode.IMAGE_INSERT, userId, null);
+            msg.docId = docId;
+            msg.blockId = b.id;
+            msg.offset = img[1];
+            msg.length = 1;
+            msg.payload = b.data;
+            msg.width = b.width;
+            msg.height = b.height;
+            result.add(msg);
+        }
+        return result;
+    }
+
+    @Override
+    public DocumentState createState() {
+        DocumentState s = new DocumentState();
+        s.text = replica.text();
+        s.images = new ArrayList<>();
+        for (int[] img : replica.images()) {
+            ImageBlock b = images.get(img[0]);
+            if (b == null) continue;
+            b.offset = img[1];
+            s.images.add(b.toState());
+        }
+        return s;
+    }
+
+    @Override
+    public void loadState(DocumentState state) {
+        images.clear();
+        replica = RgaReplica.fromState(state, SERVER_SITE);
+        lines.reset(state == null ? null : state.text);
+        if (state == null || state.images == null) return;
+
+        for (ImageState is : state.images) {
+            images.put(is.id, ImageBlock.fromState(is));
+        }
+    }
+}
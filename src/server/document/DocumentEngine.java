@@ -0,0 +1,38 @@
+package server.document;
+
+import global.object.DocumentState;
+import global.object.EditMessage;
+
+import java.util.List;
+
+// 방(DocumentRoom)이 쓰는 문서 엔진. 서버 설정 engine=rope(기본) | crdt
+// 방의 apply 단계에서만 부른다 (저장할 상태도 apply 단계에서 뜬다). 쓰는 쪽이 하나뿐이라 엔진은 잠그지 않는다.
+public interface DocumentEngine {
+
+    void apply(EditMessage msg);
+
+    // 이미지의 현재 위치 (없으면 -1)
+    int imageOffset(int blockId);
+
+    // 줄 <-> offset (LineIndex). 없는 줄이면 -1
+    int lineCount();
+
+    int lineOf(int offset);
+
+    int lineStart(int line);
+
+    int lineEnd(int line);
+
+    String getDocument();
+
+    List<EditMessage> buildFullImageSyncMessages(String docId, String userId);
+
+    DocumentState createState();
+
+    void loadState(DocumentState state);
+
+    static DocumentEngine create(String name) {
+        if ("crdt".equalsIgnoreCase(name)) return new CrdtDocument();
+        return new DocumentManager();
+    }
+}
@@ -4,16 +4,24 @@ import global.enums.Mode;
 import global.object.DocumentState;
 import global.object.EditMessage;
 import global.object.ImageState;
+import global.util.AnchorIndex;
 
 import java.util.*;
 
-public class DocumentManager {
+public class DocumentManager implements DocumentEngine {
 
     private static final char IMAGE_PLACEHOLDER = '\uFFFC';
-    private final StringBuilder text = new StringBuilder();
-    private final Map<Integer, ImageBlock> images = new HashMap<>();
+    private static final String PLACEHOLDER = String.valueOf(IMAGE_PLACEHOLDER);
 
-    public synchronized void apply(EditMessage msg) {
+    // 불변 로프: 편집은 O(log n), 스냅샷은 참조만 잡는다 (복사 없음)
+    private Rope text = Rope.EMPTY;
+    // 이미지 위치 색인: 텍스트 편집에 따른 offset 이동이 O(log 이미지 수)
+    private final AnchorIndex<ImageBlock> images = new AnchorIndex<>();
+    // 줄 색인: offset <-> 줄 변환이 O(log 줄 수) (줄 잠금 위치 계산용)
+    private final LineIndex lines = new LineIndex();
+
+    @Override
+    public void apply(EditMessage msg) {
         if (msg == null || msg.mode == null) return;
 
         switch (msg.mode) {
@@ -30,7 +38,8 @@ public class DocumentManager {
     private void applyInsert(EditMessage msg) {
         if (msg.text == null || msg.text.isEmpty()) return;
         int offset = clampOffset(msg.offset);
-        text.insert(offset, msg.text);
+        text = text.insert(offset, msg.text);
+        lines.insert(offset, msg.text);
         shiftImages(offset, msg.text.length());
     }
 
@@ -39,37 +48,29 @@ public class DocumentManager {
         int end = clampOffset(msg.offset + msg.length);
         if (start >= end) return;
 
-        text.delete(start, end);
-        int delta = end - start;
-
-        Iterator<ImageBlock> it = images.values().iterator();
-        while (it.hasNext()) {
-            ImageBlock b = it.next();
-            if (b.offset >= start && b.offset < end) {
-                it.remove();
-            } else if (b.offset >= end) {
-                b.offset -= delta;
-            }
-        }
+        text = text.delete(start, end);
+        lines.delete(start, end - start);
+        images.removeRange(start, end);
     }
 
     private void applyFullSync(EditMessage msg) {
-        text.setLength(0);
-        if (msg.text != null) text.append(msg.text);
+        text = Rope.of(msg.text);
+        lines.reset(msg.text);
     }
 
     private void applyImageInsert(EditMessage msg) {
         if (msg.payload == null) return;
         int offset = clampOffset(msg.offset);
 
-        text.insert(offset, IMAGE_PLACEHOLDER);
+        text = text.insert(offset, PLACEHOLDER);
+        lines.insert(offset, PLACEHOLDER);
         shiftImages(offset, 1);
 
         int w = msg.width > 0 ? msg.width : -1;
         int h = msg.height > 0 ? msg.height : -1;
 
         ImageBlock block = new ImageBlock(msg.blockId, offset, w, h, msg.payload);
-        images.put(block.id, block);
+        images.put(block.id, offset, block);
     }
 
     private void applyImageResize(EditMessage msg) {
@@ -83,33 +84,27 @@ public class DocumentManager {
         ImageBlock block = images.get(msg.blockId);
         if (block == null) return;
 
-        int oldOffset = clampOffset(block.offset);
+        int oldOffset = clampOffset(images.offsetOf(block.id));
         int newOffset = clampOffset(msg.newOffset);
         if (oldOffset == newOffset) return;
         if (oldOffset < text.length() && text.charAt(oldOffset) == IMAGE_PLACEHOLDER) {
-            text.delete(oldOffset, oldOffset + 1);
-        }
-        for (ImageBlock b : images.values()) {
-            if (b.id == block.id) continue;
-            if (b.offset > oldOffset) b.offset -= 1;
+            text = text.delete(oldOffset, oldOffset + 1);
+            lines.delete(oldOffset, 1);
         }
+        images.remove(block.id);
+        images.shiftFrom(oldOffset + 1, -1);
 
         if (newOffset > oldOffset) newOffset -= 1;
         newOffset = clampOffset(newOffset);
 
-        text.insert(newOffset, IMAGE_PLACEHOLDER);
-        for (ImageBlock b : images.values()) {
-            if (b.id == block.id) continue;
-            if (b.offset >= newOffset) b.offset += 1;
-        }
-        block.offset = newOffset;
+        text = text.insert(newOffset, PLACEHOLDER);
+        lines.insert(newOffset, PLACEHOLDER);
+        images.shiftFrom(newOffset, 1);
+        images.put(block.id, newOffset, block);
     }
 
     private void shiftImages(int fromOffset, int delta) {
-        if (delta == 0) return;
-        for (ImageBlock b : images.values()) {
-            if (b.offset >= fromOffset) b.offset += delta;
-        }
+        images.shiftFrom(fromOffset, delta);
     }
 
     private int clampOffset(int offset) {
@@ -118,45 +113,85 @@ public class DocumentManager {
         return offset;
     }
 
-    public synchronized String getDocument() {
-        return text.toString();
+    // 이미지의 현재 위치 (없으면 -1)
+    @Override
+    public int imageOffset(int blockId) {
+        return images.offsetOf(blockId);
+    }
+
+    @Override
+    public int lineCount() {
+        return lines.lineCount();
+    }
+
+    @Override
+    public int lineOf(int offset) {
+        return lines.lineOf(offset);
     }
 
-    public synchronized List<EditMessage> buildFullImageSyncMessages(String docId, String userId) {
+    @Override
+    public int lineStart(int line) {
+        return lines.lineStart(line);
+    }
+
+    @Override
+    public int lineEnd(int line) {
+        return lines.lineEnd(line);
+    }
+
+    @Override
+    public String getDocument() {
+        return snapshot().toString();
+    }
+
+    // 현재 텍스트의 불변 스냅샷 (복사 없음)
+    public Rope snapshot() {
+        return text;
+    }
+
+    @Override
+    public List<EditMessage> buildFullImageSyncMessages(String docId, String userId) {
         List<EditMessage> result = new ArrayList<>();
-        for (ImageBlock b : images.values()) {
+        images.forEach((id, offset, b) -> {
             EditMessage msg = new EditMessage(Mode.IMAGE_INSERT, userId, null);
             msg.docId = docId;
             msg.blockId = b.id;
-            msg.offset = b.offset;
+            msg.offset = offset;
             msg.length = 1;
             msg.payload = b.data;
             msg.width = b.width;
             msg.height = b.height;
             result.add(msg);
-        }
+        });
         return result;
     }
 
-    public synchronized DocumentState createState() {
+    @Override
+    public DocumentState createState() {
+        List<ImageState> imageStates = new ArrayList<>();
+        images.forEach((id, offset, b) -> {
+            b.offset = offset;
+            imageStates.add(b.toState());
+        });
+
         DocumentState s = new DocumentState();
         s.text = text.toString();
-        s.images = new ArrayList<>();
-        for (ImageBlock b : images.values()) {
-            s.images.add(b.toState());
-        }
+        s.images = imageStates;
         return s;
     }
 
-    public synchronized void loadState(DocumentState state) {
-        text.setLength(0);
+    @Override
+    public void loadState(DocumentState state) {
+        text = Rope.EMPTY;
         images.clear();
+        lines.reset("");
         if (state == null) return;
 
-        if (state.text != null) text.append(state.text);
+        text = Rope.of(state.text);
+        lines.reset(state.text);
         if (state.images != null) {
             for (ImageState is : state.images) {
-                images.put(is.id, ImageBlock.fromState(is));
+                images.put(is.id, is.offset, ImageBlock.fromState(is));
             }
         }
     }
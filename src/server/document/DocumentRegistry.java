@@ -1,8 +1,7 @@
 package server.document;
 
-import server.storage.DocumentStorage;
-
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public class DocumentRegistry {
 
@@ -13,13 +12,13 @@ public class DocumentRegistry {
         return rooms.get(docId);
     }
 
-    public DocumentRoom getOrCreate(String docId, DocumentStorage storage) {
+    public DocumentRoom getOrCreate(String docId, Function<String, DocumentRoom> factory) {
         if (docId == null) return null;
-        return rooms.computeIfAbsent(docId, id -> new DocumentRoom(id, storage));
+        return rooms.computeIfAbsent(docId, factory);
     }
 
-    public void remove(String docId) {
-        if (docId == null) return;
-        rooms.remove(docId);
+    public DocumentRoom remove(String docId) {
+        if (docId == null) return null;
+        return rooms.remove(docId);
     }
 }
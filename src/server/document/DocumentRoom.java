@@ -3,96 +3,578 @@ package server.document;
 import global.enums.Mode;
 import global.object.DocumentState;
 import global.object.EditMessage;
-import server.core.ClientHandler;
+import global.ot.OpTransform;
+import server.core.ClientSession;
+import server.lock.DocLocks;
 import server.storage.DocumentStorage;
+import server.storage.OpJournal;
+import server.storage.PersistenceService;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+// 문서 하나의 방. 방 상태는 락 대신 작업 큐(RoomMailbox)로 순서를 정한다.
+// - apply  : 변환 -> 순번 -> 적용 -> 기록, 스냅샷 생성. 엔진/버전/기록은 이 단계에서만 건드린다
+// - outbox : 프레임 인코딩 -> 멤버 전송 -> ACK, 스냅샷 전달. apply가 넣은 순서 그대로 나간다
+// 저장은 PersistenceService 에 "바뀌었음"만 알린다 (저장할 때 상태만 apply 단계에서 뜨고, 직렬화/디스크 쓰기는 그쪽 I/O 스레드).
+// storage=journal 이면 대신 편집마다 ops.log 에 덧붙이고 (ACK 전), 기록이 커지면 체크포인트를 남긴다.
+// fsync 를 켜면 기록이 디스크에 닿을 때까지 그 뒤에 만들어진 전송(ACK/브로드캐스트/스냅샷)을 모두 잡아 둔다.
+// 기록 쓰기나 fsync 가 실패하면 잡아 둔 것은 복구 저장(state.bin)이 끝난 뒤에야 나간다.
+// apply/outbox는 코어 수 크기의 공유 풀에서 돌아 여러 방이 동시에 다른 코어를 쓴다.
+// 잠금 변경은 바로 알리지 않고 lockTickMs 마다 LOCK_STATE 하나로 모아 보낸다.
 public class DocumentRoom {
 
     private final String docId;
-    private final DocumentManager manager = new DocumentManager();
+    private final DocumentEngine manager;
     private final DocumentStorage storage;
+    private final PersistenceService persistence;
+    // 이 문서의 줄 잠금 (apply 단계에서만 변경, 편집에 맞춰 줄 번호를 옮긴다)
+    private final DocLocks locks;
 
-    private final Set<ClientHandler> members = ConcurrentHashMap.newKeySet();
-    private volatile boolean loaded = false;
+    private final RoomMailbox apply;
+    private final RoomMailbox outbox;
+    private final ScheduledExecutorService ticker;
+    private final int lockTickMs;
 
-    private volatile long lastSaveMs = 0;
-    private int dirtyEdits = 0;
+    private final Set<ClientSession> members = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
 
-    public DocumentRoom(String docId, DocumentStorage storage) {
+    // ===== apply 단계에서만 접근 =====
+    private boolean loaded = false;
+    private String title = "Untitled"; // 스냅샷마다 디스크를 읽지 않도록 처음 열 때 읽어 둔다
+
+    // ===== 편집 기록 (storage=journal) =====
+    private static final long CHECKPOINT_RETRY_MS = 1000;
+    private final long checkpointBytes;    // 0 이면 기록 없이 state.bin 전체 저장만
+    private OpJournal journal;             // apply 단계에서만
+    private long journalSeq = 0;           // 엔진 상태에 반영된 마지막 기록 번호 (apply 단계에서만)
+    private boolean checkpointInFlight = false; // 체크포인트 저장이 I/O 스레드에 있음 (apply 단계에서만)
+    private long checkpointRetryAt = 0;         // 저장이 실패했으면 이때부터 다시 시도
+    private long durableSeq = 0;           // fsync 가 끝난 마지막 기록 번호 (apply 단계에서만)
+    private boolean rescuing = false;      // 기록 쓰기/fsync 실패: 기록 대신 복구 저장으로 디스크에 남기는 중
+    private boolean rescueInFlight = false;
+    // fsync 를 기다리는 outbox 작업 (apply 가 넣은 순서 그대로). apply 단계에서만
+    private final ArrayDeque<Held> held = new ArrayDeque<>();
+    private boolean lockStatePending = false; // LOCK_STATE 전송이 예약됨
+
+    // ===== OT: 서버 순번과 최근 연산 기록 =====
+    // 편집마다 version을 하나씩 올리고, 클라이언트가 보낸 기준 버전 이후의 기록에 대해 변환한다.
+    // 기록보다 오래된 기준으로 온 편집은 변환할 수 없으므로 보낸 사람을 재동기화한다.
+    private static final int HISTORY_LIMIT = 4096;
+    private long version = 0;
+    private final ArrayDeque<EditMessage> history = new ArrayDeque<>();
+
+    // 멤버별 마지막 스냅샷 버전. 이보다 앞선 기준의 편집은 클라이언트가 스냅샷 때 이미 버렸다
+    private final Map<ClientSession, Long> syncedAt = new ConcurrentHashMap<>();
+
+    public DocumentRoom(String docId, DocumentStorage storage, PersistenceService persistence, DocumentEngine engine,
+                        DocLocks locks, Executor roomPool, ScheduledExecutorService ticker, int lockTickMs,
+                        long checkpointBytes) {
         this.docId = docId;
         this.storage = storage;
+        this.persistence = persistence;
+        this.manager = engine;
+        this.locks = locks;
+        this.apply = new RoomMailbox(docId + "/apply", roomPool);
+        this.outbox = new RoomMailbox(docId + "/outbox", roomPool);
+        this.ticker = ticker;
+        this.lockTickMs = lockTickMs;
+        this.checkpointBytes = checkpointBytes;
     }
 
     public String getDocId() { return docId; }
 
-    public synchronized void loadIfNeeded() {
+    // apply 단계에서만 호출
+    private void loadIfNeeded() {
         if (loaded) return;
 
         storage.ensureExists(docId);
         DocumentState state = storage.load(docId);
         if (state != null) manager.loadState(state);
+        title = storage.getTitle(docId);
+
+        // 체크포인트 이후 기록을 다시 적용 (스냅샷 모드여도 남은 기록이 있으면 반영하고,
+        // 다음 저장의 journalSeq 로 이미 반영했음을 남긴다)
+        OpJournal j = storage.openJournal(docId);
+        for (EditMessage op : j.replay(state == null ? 0 : state.journalSeq)) manager.apply(op);
+        journalSeq = j.seq();
+        durableSeq = journalSeq;
+        if (checkpointBytes > 0) journal = j;
 
         loaded = true;
     }
 
-    public void join(ClientHandler h) {
-        members.add(h);
+    // 입장: 스냅샷을 apply 단계에서 만들고, outbox 단계에서 멤버로 넣은 뒤 보낸다.
+    // 그래서 스냅샷 이전 편집은 이 멤버에게 가지 않고, 이후 편집만 스냅샷 뒤에 붙는다.
+    public void join(ClientSession h) {
         h.setCurrentDocId(docId);
+        apply.execute(() -> {
+            if (closed) return;
+            List<EditMessage> snapshot = buildSnapshotFor(h);
+            post(() -> {
+                if (closed || !docId.equals(h.getCurrentDocId())) return;
+                members.add(h);
+                for (EditMessage m : snapshot) h.send(m);
+            });
+        });
     }
 
-    public void leave(ClientHandler h) {
+    public void leave(ClientSession h) {
         members.remove(h);
+        syncedAt.remove(h);
+
+        // 떠난 사람은 줄 대기열에서도 뺀다 (잠금은 UNLOCK/연결 종료/임대 만료로 풀린다)
+        String userId = h.getUserId();
+        apply.execute(() -> {
+            if (!closed && locks.cancelWait(userId)) lockStateChanged();
+        });
+    }
+
+    // 문서 삭제: 이후 들어오는 작업과 저장은 모두 무시된다
+    public List<ClientSession> evictAll() {
+        closed = true;
+        apply.execute(() -> {
+            if (journal != null) journal.close();
+        });
+        List<ClientSession> evicted = new ArrayList<>(members);
+        members.removeAll(evicted);
+        for (ClientSession h : evicted) syncedAt.remove(h);
+        return evicted;
+    }
+
+    // 편집 외의 문서 단위 알림 (잠금 등): 멤버에게만, 프레임은 한 번만 인코딩. outbox 단계에서 호출
+    private void broadcast(EditMessage msg) {
+        ByteBuffer frame = null;
+        for (ClientSession h : members) {
+            if (frame == null) frame = ClientSession.encodeShared(msg);
+            if (frame == null) return;
+            h.sendFrame(frame);
+        }
+    }
+
+    // 송신 큐가 넘친 멤버: 대기 중인 메시지를 head + 현재 스냅샷(잠금 포함)으로 교체.
+    // 스냅샷 이전 편집은 outbox에서 먼저 나가 교체될 때 함께 지워지고, 이후 편집만 뒤따른다.
+    public void resyncTo(ClientSession h, List<EditMessage> head) {
+        apply.execute(() -> resyncNow(h, head));
     }
 
-    public void sendSnapshotTo(ClientHandler h) {
+    private void resyncNow(ClientSession h, List<EditMessage> head) {
+        List<EditMessage> msgs = new ArrayList<>(head);
+        if (!closed) msgs.addAll(buildSnapshotFor(h));
+        post(() -> h.resetOutbound(msgs));
+    }
+
+    // 스냅샷마다 버전을 하나 올려(빈 기록) 받는 쪽의 이전 편집과 구분한다
+    private List<EditMessage> buildSnapshotFor(ClientSession h) {
         loadIfNeeded();
 
+        EditMessage marker = new EditMessage(Mode.SYNC_END, "server", null);
+        marker.version = ++version;
+        record(marker);
+        syncedAt.put(h, version);
+
+        List<EditMessage> msgs = new ArrayList<>();
+
         EditMessage full = new EditMessage(Mode.FULL_SYNC, "server", manager.getDocument());
         full.docId = docId;
-        full.docTitle = storage.getTitle(docId);
+        full.version = version;
+        full.docTitle = title;
         full.offset = 0;
         full.length = (full.text == null) ? 0 : full.text.length();
-        h.send(full);
+        msgs.add(full);
 
         for (EditMessage img : manager.buildFullImageSyncMessages(docId, "server")) {
-            h.send(img);
+            img.version = version;
+            msgs.add(img);
         }
 
         EditMessage end = new EditMessage(Mode.SYNC_END, "server", null);
         end.docId = docId;
-        h.send(end);
+        msgs.add(end);
+
+        msgs.add(lockState());
+        return msgs;
+    }
+
+    public void applyAndBroadcast(EditMessage msg, ClientSession sender) {
+        applyAndBroadcast(List.of(msg), sender);
     }
 
-    public void applyAndBroadcast(EditMessage msg, ClientHandler sender) {
+    // ops: 한 클라이언트가 같은 기준 버전(ops[0].version)에서 만든 연속 편집.
+    // 호출한 스레드(연결 스레드/이벤트 루프)는 큐에 넣고 바로 돌아간다.
+    public void applyAndBroadcast(List<EditMessage> ops, ClientSession sender) {
+        if (ops == null || ops.isEmpty()) return;
+        apply.execute(() -> applyNow(ops, sender));
+    }
+
+    // apply 단계: 기준 이후 기록에 대해 변환 -> 순번 부여 -> 적용 -> 기록.
+    // 전송(다른 멤버 + 보낸 사람 ACK)은 outbox 단계로 넘긴다.
+    private void applyNow(List<EditMessage> ops, ClientSession sender) {
+        if (closed) return;
         loadIfNeeded();
-        manager.apply(msg);
 
-        for (ClientHandler h : members) {
-            if (h == sender) continue;
-            h.send(msg);
+        long base = ops.get(0).version;
+        Long synced = (sender == null) ? null : syncedAt.get(sender);
+        if (synced != null && base < synced) return; // 스냅샷 이전 편집: 클라이언트가 이미 버림
+
+        // 편집이 오는 동안은 살아 있는 것: 이 문서에서 가진 잠금의 임대 연장
+        locks.renew(ops.get(0).userId);
+
+        if (base > version || version - base > history.size()) {
+            if (sender != null) resyncNow(sender, List.of());
+            return;
+        }
+
+        List<EditMessage> cur = new ArrayList<>(ops);
+        for (EditMessage done : since(base)) {
+            cur = OpTransform.transform(cur, List.of(done), true).a;
         }
 
-        autosaveMaybe();
+        List<EditMessage> applied = new ArrayList<>(cur.size());
+        for (EditMessage op : cur) {
+            if (op.mode == Mode.IMAGE_MOVE) {
+                // 이동 시작 위치는 서버 문서 기준으로 확정 (없어진 이미지면 버린다)
+                int from = manager.imageOffset(op.blockId);
+                if (from < 0) continue;
+                op.offset = from;
+            }
+
+            op.version = ++version;
+            if (applyAndShiftLocks(op)) lockStateChanged();
+            record(op);
+            applied.add(op);
+        }
+
+        // 기록이 끝난 뒤에 ACK 가 나간다
+        if (!applied.isEmpty()) {
+            if (journal != null) appendToJournal(applied);
+            else persistence.markDirty(docId, this::captureState);
+        }
+
+        long ackVersion = version;
+        post(() -> deliver(applied, sender, ackVersion));
     }
 
-    private synchronized void autosaveMaybe() {
-        dirtyEdits++;
-        long now = System.currentTimeMillis();
+    // apply 단계에서 outbox 로 넘기기. fsync 가 안 끝난 기록이 있으면 그 뒤에 만든 작업은 잡아 둔다:
+    // ACK 만 늦추면 클라이언트가 ACK 보다 뒤 편집을 먼저 받아 OT 가 어긋나므로 순서를 통째로 지킨다
+    private void post(Runnable task) {
+        if (held.isEmpty() && durableSeq >= journalSeq) {
+            outbox.execute(task);
+            return;
+        }
+        held.addLast(new Held(journalSeq, task));
+    }
 
-        if (dirtyEdits >= 15 || now - lastSaveMs >= 1200) {
-            dirtyEdits = 0;
-            lastSaveMs = now;
-            storage.save(docId, manager.createState());
+    // apply 단계: seq 까지 디스크에 닿음. 그 전에 만든 작업을 순서대로 내보낸다
+    private void durableUpTo(long seq) {
+        if (seq > durableSeq) durableSeq = seq;
+        while (!held.isEmpty() && held.peekFirst().seq <= durableSeq) outbox.execute(held.pollFirst().task);
+    }
+
+    private static final class Held {
+        final long seq;
+        final Runnable task;
+
+        Held(long seq, Runnable task) {
+            this.seq = seq;
+            this.task = task;
         }
     }
 
-    public synchronized void saveNow() {
-        loadIfNeeded();
-        storage.save(docId, manager.createState());
-        dirtyEdits = 0;
-        lastSaveMs = System.currentTimeMillis();
+    // outbox 단계: 프레임은 편집마다 한 번만 인코딩하고 모든 멤버가 같은 버퍼를 공유한다
+    private void deliver(List<EditMessage> applied, ClientSession sender, long ackVersion) {
+        for (EditMessage op : applied) {
+            ByteBuffer frame = null;
+            for (ClientSession h : members) {
+                if (h == sender) continue;
+                if (frame == null) frame = ClientSession.encodeShared(op);
+                if (frame == null) break;
+                h.sendFrame(frame);
+            }
+        }
+
+        if (sender != null) {
+            EditMessage ack = new EditMessage(Mode.ACK, "server", null);
+            ack.docId = docId;
+            ack.version = ackVersion;
+            sender.send(ack);
+        }
+    }
+
+    // 편집 적용. 줄 수가 바뀌면 잠긴 줄을 같이 옮긴다 (적용 전 위치로 계산). 반환: 잠금이 옮겨졌는지
+    private boolean applyAndShiftLocks(EditMessage op) {
+        boolean text = op.mode == Mode.INSERT || op.mode == Mode.DELETE;
+        if (!text || locks.isEmpty()) {
+            manager.apply(op);
+            return false;
+        }
+
+        int before = manager.lineCount();
+        int line = manager.lineOf(op.offset);
+        int endLine = (op.mode == Mode.DELETE) ? manager.lineOf(op.offset + op.length) : line;
+        boolean atLineStart = op.offset <= manager.lineStart(line);
+        boolean endsAtLineStart = op.mode == Mode.DELETE && op.offset + op.length == manager.lineStart(endLine);
+
+        manager.apply(op);
+
+        int delta = manager.lineCount() - before;
+        if (delta > 0) return locks.shiftInsert(line, atLineStart, delta);
+        if (delta < 0) return locks.shiftDelete(line, endLine, atLineStart && endsAtLineStart);
+        return false;
+    }
+
+    // ===== 줄 잠금 =====
+    // 요청은 표만 바꾸고 알림은 lockStateChanged 로 예약한다.
+    // 방향키를 누르고 있는 동안의 이동/해제가 한 틱 안에서 마지막 상태 하나로 합쳐진다.
+    public void lock(int line, String userId) {
+        apply.execute(() -> {
+            if (closed) return;
+            locks.renew(userId);
+            int before = locks.size();
+            locks.tryLock(line, userId);
+            if (locks.size() != before) lockStateChanged();
+        });
+    }
+
+    public void unlock(int line, String userId) {
+        apply.execute(() -> {
+            // 남의 잠금을 푸는 요청은 무시
+            if (closed || !locks.unlock(line, userId)) return;
+            lockStateChanged();
+        });
+    }
+
+    // 캐럿 이동: 이전 줄 해제 + 새 줄 잠금을 한 번에. queue 면 남의 줄은 대기열에 서고,
+    // 풀리는 순간 넘겨받아 다음 LOCK_STATE 로 알게 된다 (다시 요청할 필요 없음)
+    public void moveLock(int line, String userId, boolean queue) {
+        apply.execute(() -> {
+            if (closed) return;
+            locks.renew(userId);
+            if (locks.moveTo(line, userId, queue)) lockStateChanged();
+        });
+    }
+
+    // 임대 만료 (휠 스레드가 알림): apply 단계에서 다시 확인하고 풀어 다음 틱에 알린다
+    public void expireLocksOf(String userId) {
+        apply.execute(() -> {
+            if (closed) return;
+            if (!locks.expire(userId).isEmpty()) lockStateChanged();
+        });
+    }
+
+    // 연결이 끊긴 사용자의 잠금을 모두 푼다
+    public void releaseLocksOf(String userId) {
+        apply.execute(() -> {
+            if (closed) return;
+            if (!locks.releaseAll(userId).isEmpty()) lockStateChanged();
+        });
+    }
+
+    // apply 단계에서만 호출. 틱 안의 변경은 예약 하나로 모인다
+    private void lockStateChanged() {
+        if (lockStatePending) return;
+        lockStatePending = true;
+
+        if (lockTickMs <= 0) {
+            apply.execute(this::flushLockState);
+            return;
+        }
+        try {
+            ticker.schedule(() -> apply.execute(this::flushLockState), lockTickMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 종료 중
+            lockStatePending = false;
+        }
+    }
+
+    // 보낼 때의 표를 뜬다. 그 사이 편집으로 옮겨진 줄도 반영되고, 편집보다 뒤에 나간다
+    private void flushLockState() {
+        lockStatePending = false;
+        if (closed) return;
+
+        EditMessage state = lockState();
+        post(() -> broadcast(state));
+    }
+
+    // 잠금 전체를 구간으로: 같은 소유자의 연속된 줄은 LOCK 하나 (blockId=시작 줄, length=줄 수).
+    // 대기자는 LOCK_MOVE (blockId=기다리는 줄, length=순번 1부터)
+    private EditMessage lockState() {
+        ArrayList<EditMessage> ranges = new ArrayList<>();
+        EditMessage run = null;
+        for (Map.Entry<Integer, String> e : locks.snapshot().entrySet()) {
+            int line = e.getKey();
+            if (run != null && run.userId.equals(e.getValue()) && run.blockId + run.length == line) {
+                run.length++;
+                continue;
+            }
+            run = new EditMessage(Mode.LOCK, e.getValue(), null);
+            run.blockId = line;
+            run.length = 1;
+            ranges.add(run);
+        }
+
+        for (Map.Entry<Integer, List<String>> e : locks.waiters().entrySet()) {
+            int pos = 0;
+            for (String user : e.getValue()) {
+                EditMessage w = new EditMessage(Mode.LOCK_MOVE, user, null);
+                w.blockId = e.getKey();
+                w.length = ++pos;
+                ranges.add(w);
+            }
+        }
+
+        EditMessage state = new EditMessage(Mode.LOCK_STATE, "server", null);
+        state.docId = docId;
+        state.ops = ranges;
+        return state;
+    }
+
+    private void record(EditMessage op) {
+        history.addLast(op);
+        while (history.size() > HISTORY_LIMIT) history.pollFirst();
+    }
+
+    // base 이후에 적용된 기록 (오래된 것부터)
+    private List<EditMessage> since(long base) {
+        int n = (int) (version - base);
+        List<EditMessage> out = new ArrayList<>(n);
+        Iterator<EditMessage> it = history.descendingIterator();
+        while (n-- > 0 && it.hasNext()) out.add(it.next());
+        Collections.reverse(out);
+        return out;
+    }
+
+    // 저장 I/O 스레드에서 호출. 상태와 기록 번호는 apply 단계에서 함께 떠 온다:
+    // 따로 읽으면 그 사이 적용+기록된 편집이 state.bin 에는 없는데 journalSeq 만 넘어가
+    // 다시 열 때 그 편집을 건너뛴다. 닫힌 방은 저장하지 않음
+    private DocumentState captureState() {
+        if (closed) return null;
+        CompletableFuture<DocumentState> captured = new CompletableFuture<>();
+        apply.execute(() -> captured.complete(closed ? null : stateAtJournalSeq()));
+        return captured.join();
+    }
+
+    // apply 단계에서만: 지금 상태 + 여기까지 반영된 기록 번호
+    private DocumentState stateAtJournalSeq() {
+        DocumentState state = manager.createState();
+        state.journalSeq = journalSeq;
+        return state;
+    }
+
+    private void appendToJournal(List<EditMessage> applied) {
+        if (rescuing) {
+            // 복구 저장 중: 파일에는 쓰지 않고 번호만 넘긴다 (다음 복구 저장이 이 번호까지 따라잡는다)
+            journalSeq += applied.size();
+            startRescue();
+            return;
+        }
+        try {
+            journalSeq = journal.append(applied);
+        } catch (RuntimeException e) {
+            System.out.println("[저널 오류] " + docId + ": " + e.getMessage());
+            journalSeq += applied.size();
+            enterRescue();
+            return;
+        }
+
+        long seq = journalSeq;
+        if (journal.deferredSync()) journal.sync(err -> apply.execute(() -> journalSynced(seq, err)));
+        else durableSeq = seq;
+
+        if (journal.size() >= checkpointBytes || journal.checkpointPending()) checkpoint();
+    }
+
+    // apply 단계: fsync 결과. 복구 중에는 같은 파일의 뒤 fsync 가 성공해도 실패한 앞 기록을 보장하지 않으므로 무시
+    private void journalSynced(long seq, IOException err) {
+        if (closed || rescuing) return;
+        if (err == null) {
+            durableUpTo(seq);
+            return;
+        }
+        System.out.println("[fsync 오류] " + docId + ": " + err.getMessage());
+        enterRescue();
+    }
+
+    // ===== 기록 실패 복구 =====
+    // 쓰기나 fsync 가 실패한 기록은 디스크에 있다고 믿을 수 없다. 잡아 둔 ACK/전송은 그대로 두고
+    // 지금 상태를 그 번호와 함께 state.bin 으로 저장해, 끝나면 그 번호까지 내보낸다.
+    // 저장하는 동안 들어온 편집은 다음 복구 저장이 따라잡고, 다 따라잡으면 기록 파일을 비우고 이어서 기록한다
+    private void enterRescue() {
+        rescuing = true;
+        journal.close();
+        startRescue();
+    }
+
+    // 돌고 있는 체크포인트가 끝난 뒤에 (더 오래된 상태가 복구 저장을 덮어쓰지 않게)
+    private void startRescue() {
+        if (rescueInFlight || checkpointInFlight || closed) return;
+
+        rescueInFlight = true;
+        long seq = journalSeq;
+        persistence.checkpoint(docId, stateAtJournalSeq(),
+                () -> apply.execute(() -> rescueSaved(seq)),
+                () -> apply.execute(this::rescueFailed));
+    }
+
+    private void rescueSaved(long seq) {
+        rescueInFlight = false;
+        if (closed) return;
+
+        durableUpTo(seq);
+        if (journalSeq > seq) {
+            startRescue();
+            return;
+        }
+        journal.reset(seq);
+        rescuing = false;
+    }
+
+    // 저장도 실패: 편집이 없어도 잡아 둔 ACK 가 풀리도록 잠시 뒤 다시 시도
+    private void rescueFailed() {
+        rescueInFlight = false;
+        try {
+            ticker.schedule(() -> apply.execute(this::startRescue), CHECKPOINT_RETRY_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // 종료 중
+        }
+    }
+
+    // 체크포인트: 지금 상태를 여기까지의 기록 번호와 함께 떠서 저장하고,
+    // 돌려 둔 이전 기록(ops.old.log)은 저장이 끝나면 지운다. 그 사이 편집은 새 ops.log 로 간다.
+    // 저장이 실패하면 ops.old.log 가 남아 있으므로 다시 돌리지 않고 (덮어쓰면 그 기록을 잃는다)
+    // CHECKPOINT_RETRY_MS 뒤의 편집에서 상태만 다시 떠서 쓴다. 시작할 때 남아 있던 ops.old.log 도 같은 길로 정리된다
+    private void checkpoint() {
+        if (checkpointInFlight || System.currentTimeMillis() < checkpointRetryAt) return;
+
+        OpJournal j = journal;
+        if (!j.checkpointPending() && !j.rotate()) return;
+
+        checkpointInFlight = true;
+        persistence.checkpoint(docId, stateAtJournalSeq(),
+                () -> {
+                    j.dropOld();
+                    apply.execute(() -> {
+                        checkpointInFlight = false;
+                        if (rescuing) startRescue();
+                    });
+                },
+                () -> apply.execute(() -> {
+                    checkpointInFlight = false;
+                    checkpointRetryAt = System.currentTimeMillis() + CHECKPOINT_RETRY_MS;
+                    if (rescuing) startRescue();
+                }));
     }
 }
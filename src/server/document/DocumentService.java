@@ -2,18 +2,55 @@ package server.document;
 
 import global.object.DocumentMeta;
 import global.object.EditMessage;
-import server.core.ClientHandler;
+import server.core.ClientSession;
+import server.lock.LineLockService;
 import server.storage.DocumentStorage;
+import server.storage.PersistenceService;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class DocumentService {
 
     private final DocumentStorage storage;
+    private final LineLockService lockService;
     private final DocumentRegistry registry = new DocumentRegistry();
 
-    public DocumentService(DocumentStorage storage) {
+    // 문서 엔진: rope (DocumentManager, 기본) | crdt (CrdtDocument)
+    private final String engine;
+
+    // 방 작업(apply/outbox)은 코어 수 크기의 공유 풀, 저장은 write-behind 서비스의 I/O 스레드
+    private final ExecutorService roomPool;
+    private final PersistenceService persistence;
+
+    // 잠금 알림 틱: 방마다 이 간격으로 LOCK_STATE 를 하나로 모아 보낸다 (0 이면 요청마다)
+    private final ScheduledExecutorService ticker;
+    private final int lockTickMs;
+
+    // storage=journal: 편집 기록이 이 크기를 넘으면 체크포인트 (0 이면 기록 안 함, state.bin 전체 저장)
+    private final long checkpointBytes;
+
+    public DocumentService(DocumentStorage storage, PersistenceService persistence, LineLockService lockService,
+                           String engine, int roomThreads, int lockTickMs, long checkpointBytes) {
         this.storage = storage;
+        this.lockService = lockService;
+        this.engine = engine;
+        this.roomPool = Executors.newFixedThreadPool(Math.max(1, roomThreads),
+                Thread.ofPlatform().name("room-", 0).daemon(true).factory());
+        this.persistence = persistence;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("room-tick").daemon(true).factory());
+        this.lockTickMs = lockTickMs;
+        this.checkpointBytes = checkpointBytes;
+        lockService.setExpiryHandler(this::expireLocks);
+    }
+
+    private DocumentRoom newRoom(String docId) {
+        return new DocumentRoom(docId, storage, persistence, DocumentEngine.create(engine), lockService.table(docId),
+                roomPool, ticker, lockTickMs, checkpointBytes);
     }
 
     public List<DocumentMeta> listDocs() {
@@ -24,22 +61,67 @@ public class DocumentService {
         return storage.create(title);
     }
 
-    public boolean delete(String docId) {
-        registry.remove(docId);
-        return storage.delete(docId);
+    // 삭제 후 해당 room에 있던 멤버들을 돌려준다 (DOC_DELETED 알림용)
+    public List<ClientSession> delete(String docId) {
+        DocumentRoom room = registry.remove(docId);
+        // 방을 닫고 진행 중인 저장을 기다린 뒤 지워야 저장이 지운 파일을 되살리지 않는다
+        List<ClientSession> evicted = (room == null) ? new ArrayList<>() : room.evictAll();
+        persistence.forget(docId);
+        storage.delete(docId);
+        lockService.closeDoc(docId);
+
+        for (ClientSession h : evicted) {
+            if (docId.equals(h.getCurrentDocId())) h.setCurrentDocId(null);
+        }
+        return evicted;
+    }
+
+    // ===== 줄 잠금: 문서 방의 apply 단계에서 편집과 같은 순서로 처리 =====
+    public void lock(EditMessage msg, ClientSession sender) {
+        DocumentRoom room = currentRoom(msg, sender);
+        if (room != null) room.lock(msg.blockId, msg.userId);
+    }
+
+    public void unlock(EditMessage msg, ClientSession sender) {
+        DocumentRoom room = currentRoom(msg, sender);
+        if (room != null) room.unlock(msg.blockId, msg.userId);
+    }
+
+    public void moveLock(EditMessage msg, ClientSession sender) {
+        DocumentRoom room = currentRoom(msg, sender);
+        if (room != null) room.moveLock(msg.blockId, msg.userId, msg.length > 0);
+    }
+
+    // 연결 종료: 이 사용자가 잠금을 가진 문서들만 찾아가 푼다
+    public void releaseLocks(String userId) {
+        for (String docId : lockService.docsOf(userId)) {
+            DocumentRoom room = registry.getIfPresent(docId);
+            if (room != null) room.releaseLocksOf(userId);
+        }
+    }
+
+    // 임대 만료 (휠 스레드). 방이 없으면 문서가 지워지며 closeDoc 이 이미 정리했다
+    private void expireLocks(String docId, String userId) {
+        DocumentRoom room = registry.getIfPresent(docId);
+        if (room != null) room.expireLocksOf(userId);
     }
 
-    public void open(String docId, ClientHandler h) {
+    private DocumentRoom currentRoom(EditMessage msg, ClientSession sender) {
+        if (msg == null || msg.docId == null || sender == null) return null;
+        if (!msg.docId.equals(sender.getCurrentDocId())) return null;
+        return registry.getIfPresent(msg.docId);
+    }
+
+    public void open(String docId, ClientSession h) {
         if (docId == null || h == null) return;
 
         leave(h);
 
-        DocumentRoom room = registry.getOrCreate(docId, storage);
+        DocumentRoom room = registry.getOrCreate(docId, this::newRoom);
         room.join(h);
-        room.sendSnapshotTo(h);
     }
 
-    public void leave(ClientHandler h) {
+    public void leave(ClientSession h) {
         if (h == null) return;
 
         String old = h.getCurrentDocId();
@@ -51,13 +133,38 @@ public class DocumentService {
         h.setCurrentDocId(null);
     }
 
-    public void applyEdit(EditMessage msg, ClientHandler sender) {
+    // 송신 큐 초과 후 재동기화 (큐 교체는 방의 outbox 단계에서). 열린 문서가 없으면 false
+    public boolean resync(ClientSession h, List<EditMessage> head) {
+        String docId = h.getCurrentDocId();
+        DocumentRoom room = registry.getIfPresent(docId);
+        if (room == null) return false;
+
+        room.resyncTo(h, head);
+        return true;
+    }
+
+    public void applyEdit(EditMessage msg, ClientSession sender) {
         if (msg == null || msg.docId == null || sender == null) return;
 
         String cur = sender.getCurrentDocId();
         if (cur == null || !cur.equals(msg.docId)) return;
 
-        DocumentRoom room = registry.getOrCreate(msg.docId, storage);
+        DocumentRoom room = registry.getOrCreate(msg.docId, this::newRoom);
         room.applyAndBroadcast(msg, sender);
     }
+
+    // 같은 기준 버전에서 만든 연속 편집 (클라이언트 BATCH)
+    public void applyEdits(List<EditMessage> ops, ClientSession sender) {
+        if (ops == null || ops.isEmpty() || sender == null) return;
+
+        String docId = ops.get(0).docId;
+        String cur = sender.getCurrentDocId();
+        if (docId == null || cur == null || !cur.equals(docId)) return;
+        for (EditMessage op : ops) {
+            if (!docId.equals(op.docId)) return;
+        }
+
+        DocumentRoom room = registry.getOrCreate(docId, this::newRoom);
+        room.applyAndBroadcast(ops, sender);
+    }
 }
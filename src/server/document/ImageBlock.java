@@ -5,7 +5,7 @@ import global.object.ImageState;
 public class ImageBlock {
 
     public final int id;
-    public int offset;
+    public int offset; // 최신 위치는 DocumentManager의 AnchorIndex 기준 (상태 저장 시 갱신)
     public int width;
     public int height;
     public final byte[] data;
@@ -0,0 +1,206 @@
+package server.document;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// 줄 색인: 줄마다 길이(끝의 '\n' 포함, 마지막 줄은 제외)를 순서대로 담은 implicit treap.
+// 서브트리의 줄 수/글자 수 합을 들고 있어 offset -> 줄, 줄 -> 시작/끝 offset 이 O(log 줄 수).
+// 삽입은 넣는 글자 안의 '\n' 만큼 줄을 나누고, 삭제는 offset 만으로 양 끝 줄을 합친다.
+// 문서 엔진이 텍스트를 바꿀 때 같이 갱신한다. 스레드 안전하지 않음 (엔진 잠금 아래에서 사용).
+public class LineIndex {
+
+    private static final class Node {
+        int len;     // 이 줄의 글자 수 ('\n' 포함)
+        int sum;     // 서브트리 글자 수
+        int count;   // 서브트리 줄 수
+        final int priority;
+        Node left, right;
+
+        Node(int len) {
+            this.len = len;
+            this.priority = ThreadLocalRandom.current().nextInt();
+            update();
+        }
+
+        void update() {
+            sum = len + sum(left) + sum(right);
+            count = 1 + count(left) + count(right);
+        }
+    }
+
+    // 빈 문서도 줄 하나
+    private Node root = new Node(0);
+
+    public void reset(CharSequence text) {
+        root = null;
+        int lineStart = 0;
+        int n = (text == null) ? 0 : text.length();
+        for (int i = 0; i < n; i++) {
+            if (text.charAt(i) == '\n') {
+                root = merge(root, new Node(i + 1 - lineStart));
+                lineStart = i + 1;
+            }
+        }
+        root = merge(root, new Node(n - lineStart));
+    }
+
+    public int lineCount() { return count(root); }
+
+    public int length() { return sum(root); }
+
+    // offset이 속한 줄 (줄 끝의 '\n' 위치는 그 줄, 범위 밖은 양 끝으로 자른다)
+    public int lineOf(int offset) {
+        if (offset <= 0) return 0;
+        if (offset >= length()) return lineCount() - 1;
+
+        int line = 0;
+        Node n = root;
+        while (n != null) {
+            int leftSum = sum(n.left);
+            if (offset < leftSum) {
+                n = n.left;
+            } else if (offset < leftSum + n.len) {
+                return line + count(n.left);
+            } else {
+                offset -= leftSum + n.len;
+                line += count(n.left) + 1;
+                n = n.right;
+            }
+        }
+        return lineCount() - 1;
+    }
+
+    // 줄 시작 offset (없는 줄이면 -1)
+    public int lineStart(int line) {
+        if (line < 0 || line >= lineCount()) return -1;
+
+        int offset = 0;
+        Node n = root;
+        while (n != null) {
+            int leftCount = count(n.left);
+            if (line < leftCount) {
+                n = n.left;
+            } else if (line == leftCount) {
+                return offset + sum(n.left);
+            } else {
+                offset += sum(n.left) + n.len;
+                line -= leftCount + 1;
+                n = n.right;
+            }
+        }
+        return -1;
+    }
+
+    // 줄 끝 offset ('\n' 앞, 마지막 줄은 문서 끝). 없는 줄이면 -1
+    public int lineEnd(int line) {
+        int start = lineStart(line);
+        if (start < 0) return -1;
+        return (line == lineCount() - 1) ? length() : start + lineLength(line) - 1;
+    }
+
+    private int lineLength(int line) {
+        Node n = root;
+        while (n != null) {
+            int leftCount = count(n.left);
+            if (line < leftCount) {
+                n = n.left;
+            } else if (line == leftCount) {
+                return n.len;
+            } else {
+                line -= leftCount + 1;
+                n = n.right;
+            }
+        }
+        return 0;
+    }
+
+    // ===== 편집 =====
+    public void insert(int offset, CharSequence text) {
+        if (text == null || text.length() == 0) return;
+        offset = clamp(offset);
+
+        int line = lineOf(offset);
+        int pos = offset - lineStart(line);
+
+        Node[] a = split(root, line);
+        Node[] b = split(a[1], 1);
+        Node cur = b[0];
+
+        int newlines = 0;
+        for (int i = 0; i < text.length(); i++) if (text.charAt(i) == '\n') newlines++;
+
+        Node mid;
+        if (newlines == 0) {
+            cur.len += text.length();
+            cur.update();
+            mid = cur;
+        } else {
+            // cur 를 pos 에서 자르고 삽입 글자의 줄들을 사이에 끼운다
+            int tail = cur.len - pos;
+            mid = null;
+            int pieceStart = 0;
+            boolean first = true;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) != '\n') continue;
+                int len = i + 1 - pieceStart;
+                mid = merge(mid, new Node(first ? pos + len : len));
+                first = false;
+                pieceStart = i + 1;
+            }
+            mid = merge(mid, new Node(text.length() - pieceStart + tail));
+        }
+        root = merge(merge(a[0], mid), b[1]);
+    }
+
+    public void delete(int offset, int length) {
+        int start = clamp(offset);
+        int end = clamp(offset + length);
+        if (start >= end) return;
+
+        int first = lineOf(start);
+        int last = lineOf(end);
+        int head = start - lineStart(first);
+        int tail = lineStart(last) + lineLength(last) - end;
+
+        Node[] a = split(root, first);
+        Node[] b = split(a[1], last - first + 1);
+        root = merge(merge(a[0], new Node(head + tail)), b[1]);
+    }
+
+    private int clamp(int offset) {
+        if (offset < 0) return 0;
+        return Math.min(offset, length());
+    }
+
+    // ===== treap =====
+    private static int sum(Node n) { return n == null ? 0 : n.sum; }
+
+    private static int count(Node n) { return n == null ? 0 : n.count; }
+
+    // 앞 k 줄 / 나머지
+    private static Node[] split(Node n, int k) {
+        if (n == null) return new Node[]{null, null};
+        if (count(n.left) >= k) {
+            Node[] p = split(n.left, k);
+            n.left = p[1];
+            n.update();
+            return new Node[]{p[0], n};
+        }
+        Node[] p = split(n.right, k - count(n.left) - 1);
+        n.right = p[0];
+        n.update();
+        return new Node[]{n, p[1]};
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.update();
+        return b;
+    }
+}
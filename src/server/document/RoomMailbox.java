@@ -0,0 +1,60 @@
+package server.document;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 방 하나의 작업 큐 (단일 writer).
+// 공유 풀 위에서 돌지만 한 번에 한 스레드만 꺼내 실행하므로, 큐에 넣은 순서가 곧 실행 순서이고
+// 큐 안의 작업끼리는 락 없이 방 상태를 다룰 수 있다.
+// 한 번 잡은 스레드에서 DRAIN_BUDGET 개까지만 처리하고 풀에 다시 올려 다른 방도 돌게 한다.
+final class RoomMailbox implements Executor {
+
+    private static final int DRAIN_BUDGET = 64;
+
+    private final String name;
+    private final Executor pool;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    RoomMailbox(String name, Executor pool) {
+        this.name = name;
+        this.pool = pool;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (scheduled.compareAndSet(false, true)) schedule();
+    }
+
+    private void schedule() {
+        try {
+            pool.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // 풀 종료 중: 남은 작업은 버린다
+            tasks.clear();
+            scheduled.set(false);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < DRAIN_BUDGET; i++) {
+                Runnable task = tasks.poll();
+                if (task == null) break;
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.out.println("[ROOM 오류] " + name + ": " + e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            // 처리 중에 들어온 작업 (또는 예산 초과로 남은 작업)
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) schedule();
+        }
+    }
+}
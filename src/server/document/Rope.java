@@ -0,0 +1,267 @@
+package server.document;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// 문서 텍스트용 불변(persistent) 로프.
+// 내부는 문자열 조각(chunk)을 노드로 갖는 암시적 treap이며, 수정은 경로 복사로 새 로프를 만든다.
+// - 삽입/삭제/charAt: O(log n)
+// - 스냅샷: 로프 참조 하나 (복사 없음). 잠금 밖에서 읽어도 안전
+// - 전체 순회: chunks() / writeTo() 로 조각 단위 스트리밍
+public final class Rope implements CharSequence {
+
+    // 조각 최대 길이. 작은 편집은 조각 하나만 다시 만들고, 넘치면 노드를 쪼갠다
+    static final int MAX_CHUNK = 1024;
+
+    public static final Rope EMPTY = new Rope(null);
+
+    private static final class Node {
+        final String chunk;
+        final int priority;
+        final Node left, right;
+        final int length; // 서브트리 전체 문자 수
+
+        Node(String chunk, int priority, Node left, Node right) {
+            this.chunk = chunk;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.length = len(left) + chunk.length() + len(right);
+        }
+
+        Node(String chunk) {
+            this(chunk, ThreadLocalRandom.current().nextInt(), null, null);
+        }
+
+        Node with(Node l, String c, Node r) {
+            return new Node(c, priority, l, r);
+        }
+    }
+
+    private final Node root;
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    public static Rope of(CharSequence s) {
+        if (s == null || s.length() == 0) return EMPTY;
+        return new Rope(build(s.toString()));
+    }
+
+    // ===== 조회 =====
+    @Override
+    public int length() {
+        return len(root);
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) throw new IndexOutOfBoundsException(index);
+        Node t = root;
+        while (true) {
+            int ll = len(t.left);
+            if (index < ll) {
+                t = t.left;
+                continue;
+            }
+            index -= ll;
+            if (index < t.chunk.length()) return t.chunk.charAt(index);
+            index -= t.chunk.length();
+            t = t.right;
+        }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    public String substring(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length());
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        appendRange(root, start, end, sb);
+        return sb.toString();
+    }
+
+    // 조각 단위로 앞에서부터 순회 (전체 문자열을 만들지 않는다)
+    public Iterator<String> chunks() {
+        return new ChunkIterator(root);
+    }
+
+    public void writeTo(Appendable out) throws java.io.IOException {
+        Iterator<String> it = chunks();
+        while (it.hasNext()) out.append(it.next());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length());
+        Iterator<String> it = chunks();
+        while (it.hasNext()) sb.append(it.next());
+        return sb.toString();
+    }
+
+    // ===== 수정 (새 로프 반환) =====
+    public Rope insert(int offset, String s) {
+        if (s == null || s.isEmpty()) return this;
+        if (offset < 0 || offset > length()) throw new IndexOutOfBoundsException(offset);
+
+        // 빠른 경로: 들어갈 조각에 여유가 있으면 그 조각만 다시 만든다
+        if (s.length() < MAX_CHUNK) {
+            Node t = insertInChunk(root, offset, s);
+            if (t != null) return new Rope(t);
+        }
+
+        Node[] parts = split(root, offset);
+        return new Rope(merge(merge(parts[0], build(s)), parts[1]));
+    }
+
+    public Rope delete(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length());
+        }
+        if (start == end) return this;
+
+        Node t = deleteInChunk(root, start, end);
+        if (t != null) return new Rope(t.length == 0 ? null : t);
+
+        Node[] a = split(root, start);
+        Node[] b = split(a[1], end - start);
+        return new Rope(merge(a[0], b[1]));
+    }
+
+    // ===== treap 연산 =====
+    private static int len(Node n) {
+        return n == null ? 0 : n.length;
+    }
+
+    private static Node build(String s) {
+        Node t = null;
+        for (int i = 0; i < s.length(); i += MAX_CHUNK) {
+            t = merge(t, new Node(s.substring(i, Math.min(s.length(), i + MAX_CHUNK))));
+        }
+        return t;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) return a.with(a.left, a.chunk, merge(a.right, b));
+        return b.with(merge(a, b.left), b.chunk, b.right);
+    }
+
+    // [0, k) / [k, len) 로 나눈다. 조각 중간이면 조각을 둘로 쪼갠다
+    private static Node[] split(Node t, int k) {
+        if (t == null) return new Node[]{null, null};
+
+        int ll = len(t.left);
+        if (k <= ll) {
+            Node[] p = split(t.left, k);
+            return new Node[]{p[0], t.with(p[1], t.chunk, t.right)};
+        }
+
+        int cl = t.chunk.length();
+        if (k >= ll + cl) {
+            Node[] p = split(t.right, k - ll - cl);
+            return new Node[]{t.with(t.left, t.chunk, p[0]), p[1]};
+        }
+
+        int cut = k - ll;
+        Node l = merge(t.left, new Node(t.chunk.substring(0, cut)));
+        Node r = merge(new Node(t.chunk.substring(cut)), t.right);
+        return new Node[]{l, r};
+    }
+
+    // 조각 하나에 들어가면 경로만 복사한 새 트리, 아니면 null
+    private static Node insertInChunk(Node t, int offset, String s) {
+        if (t == null) return (offset == 0) ? new Node(s) : null;
+
+        int ll = len(t.left);
+        if (offset < ll) {
+            Node l = insertInChunk(t.left, offset, s);
+            return l == null ? null : t.with(l, t.chunk, t.right);
+        }
+
+        int at = offset - ll;
+        int cl = t.chunk.length();
+        if (at <= cl) {
+            if (cl + s.length() > MAX_CHUNK) return null;
+            return t.with(t.left, t.chunk.substring(0, at) + s + t.chunk.substring(at), t.right);
+        }
+
+        Node r = insertInChunk(t.right, at - cl, s);
+        return r == null ? null : t.with(t.left, t.chunk, r);
+    }
+
+    // [start, end) 가 조각 하나 안에 있으면 그 조각만 잘라낸 새 트리, 아니면 null
+    private static Node deleteInChunk(Node t, int start, int end) {
+        if (t == null) return null;
+
+        int ll = len(t.left);
+        if (end <= ll) {
+            Node l = deleteInChunk(t.left, start, end);
+            return l == null ? null : t.with(l.length == 0 ? null : l, t.chunk, t.right);
+        }
+
+        int cl = t.chunk.length();
+        if (start >= ll + cl) {
+            Node r = deleteInChunk(t.right, start - ll - cl, end - ll - cl);
+            return r == null ? null : t.with(t.left, t.chunk, r.length == 0 ? null : r);
+        }
+
+        if (start < ll || end > ll + cl) return null;
+
+        String c = t.chunk.substring(0, start - ll) + t.chunk.substring(end - ll);
+        if (!c.isEmpty()) return t.with(t.left, c, t.right);
+
+        // 조각이 비면 노드를 빼고 양쪽 서브트리를 잇는다 (빈 트리는 길이 0 노드로 표시)
+        Node m = merge(t.left, t.right);
+        return m == null ? new Node("", 0, null, null) : m;
+    }
+
+    private static void appendRange(Node t, int start, int end, StringBuilder sb) {
+        if (t == null || start >= end) return;
+
+        int ll = len(t.left);
+        int cl = t.chunk.length();
+        if (start < ll) appendRange(t.left, start, Math.min(end, ll), sb);
+        if (start < ll + cl && end > ll) {
+            sb.append(t.chunk, Math.max(0, start - ll), Math.min(cl, end - ll));
+        }
+        if (end > ll + cl) appendRange(t.right, Math.max(0, start - ll - cl), end - ll - cl, sb);
+    }
+
+    // 중위 순회 (명시적 스택)
+    private static final class ChunkIterator implements Iterator<String> {
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+
+        ChunkIterator(Node root) {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node n) {
+            while (n != null) {
+                stack.push(n);
+                n = n.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public String next() {
+            if (stack.isEmpty()) throw new NoSuchElementException();
+            Node n = stack.pop();
+            pushLeft(n.right);
+            return n.chunk;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package server.lock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 문서 하나의 줄 잠금 표 (줄 -> 소유자).
+// 쓰기는 그 문서 방의 apply 단계에서만 일어나므로 편집과 잠금의 순서가 같다.
+// 줄 수가 바뀌는 편집이 오면 방이 shiftInsert/shiftDelete 로 잠긴 줄을 같이 옮긴다
+// (줄 번호가 아니라 "그 줄의 내용"에 잠금이 붙어 있는 셈).
+// 읽기(스냅샷/지표)는 다른 스레드에서도 하므로 ConcurrentHashMap.
+// 남이 가진 줄을 대기 모드로 요청하면 그 줄의 대기열 끝에 서고, 줄이 풀리는 순간 앞사람부터 넘겨받는다.
+public class DocLocks {
+
+    private final String docId;
+    private final LineLockService service;
+    private final ConcurrentHashMap<Integer, String> owners = new ConcurrentHashMap<>();
+
+    // 줄 -> 대기자 (먼저 온 순서). apply 단계에서만 접근
+    private final TreeMap<Integer, ArrayDeque<String>> queues = new TreeMap<>();
+    // 대기자 -> 기다리는 줄 (사용자당 한 줄). 지표용으로 다른 스레드에서도 크기를 읽는다
+    private final ConcurrentHashMap<String, Integer> waitingOf = new ConcurrentHashMap<>();
+
+    DocLocks(String docId, LineLockService service) {
+        this.docId = docId;
+        this.service = service;
+    }
+
+    public boolean isEmpty() { return owners.isEmpty(); }
+
+    public int size() { return owners.size(); }
+
+    public int waiterCount() { return waitingOf.size(); }
+
+    // 반환: 현재 소유자 (userId 면 획득/이미 보유)
+    public String tryLock(int line, String userId) {
+        if (userId == null || line < 0) return null;
+
+        String owner = owners.putIfAbsent(line, userId);
+        if (owner != null) return owner;
+
+        service.addHolder(userId, docId);
+        return userId;
+    }
+
+    // 소유자일 때만 풀린다. 대기자가 있으면 바로 넘어간다
+    public boolean unlock(int line, String userId) {
+        if (userId == null || !owners.remove(line, userId)) return false;
+        if (!owners.containsValue(userId)) service.removeHolder(userId, docId);
+        grantWaiting();
+        return true;
+    }
+
+    // 이 사용자의 잠금을 line 하나로 옮긴다: 다른 줄 잠금과 대기는 풀고 line 을 잡는다.
+    // line 을 남이 가졌으면 queue 일 때 대기열 끝에 서고 (이미 그 줄을 기다리면 자리 유지), 아니면 풀기만.
+    // 반환: 표(잠금 또는 대기열)가 바뀌었는지
+    public boolean moveTo(int line, String userId, boolean queue) {
+        if (userId == null) return false;
+
+        Integer waiting = waitingOf.get(userId);
+        boolean stay = queue && waiting != null && waiting == line;
+        boolean changed = !stay && leaveQueue(userId);
+
+        for (Map.Entry<Integer, String> e : owners.entrySet()) {
+            if (e.getKey() != line && userId.equals(e.getValue()) && owners.remove(e.getKey(), userId)) {
+                changed = true;
+            }
+        }
+
+        if (line >= 0 && owners.putIfAbsent(line, userId) == null) {
+            service.addHolder(userId, docId);
+            changed = true;
+        } else {
+            if (changed && !owners.containsValue(userId)) service.removeHolder(userId, docId);
+            if (line >= 0 && queue && !stay && !userId.equals(owners.get(line))) {
+                queues.computeIfAbsent(line, k -> new ArrayDeque<>()).addLast(userId);
+                waitingOf.put(userId, line);
+                changed = true;
+            }
+        }
+
+        return grantWaiting() | changed;
+    }
+
+    // 이 사용자의 잠금과 대기를 모두 푼다. 반환: 풀린 줄
+    public List<Integer> releaseAll(String userId) {
+        List<Integer> released = new ArrayList<>();
+        if (userId == null) return released;
+
+        leaveQueue(userId);
+        for (Map.Entry<Integer, String> e : owners.entrySet()) {
+            if (userId.equals(e.getValue()) && owners.remove(e.getKey(), userId)) released.add(e.getKey());
+        }
+        service.removeHolder(userId, docId);
+        grantWaiting();
+        return released;
+    }
+
+    // ===== 대기열 =====
+    // 문서를 떠난 사람: 대기만 취소 (잠금은 그대로). 반환: 기다리던 중이었는지
+    public boolean cancelWait(String userId) {
+        return userId != null && leaveQueue(userId);
+    }
+
+    private boolean leaveQueue(String userId) {
+        Integer line = waitingOf.remove(userId);
+        if (line == null) return false;
+
+        ArrayDeque<String> q = queues.get(line);
+        if (q != null) {
+            q.remove(userId);
+            if (q.isEmpty()) queues.remove(line);
+        }
+        return true;
+    }
+
+    // 주인이 없는 줄은 대기열 맨 앞사람에게 넘긴다. 반환: 넘긴 줄이 있는지
+    private boolean grantWaiting() {
+        boolean granted = false;
+        Iterator<Map.Entry<Integer, ArrayDeque<String>>> it = queues.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, ArrayDeque<String>> e = it.next();
+            int line = e.getKey();
+            if (!owners.containsKey(line)) {
+                String next = e.getValue().pollFirst();
+                waitingOf.remove(next);
+                owners.put(line, next);
+                service.addHolder(next, docId);
+                granted = true;
+            }
+            if (e.getValue().isEmpty()) it.remove();
+        }
+        return granted;
+    }
+
+    // 줄 순서의 대기열 (LOCK_STATE 용). apply 단계에서만
+    public TreeMap<Integer, List<String>> waiters() {
+        TreeMap<Integer, List<String>> out = new TreeMap<>();
+        for (Map.Entry<Integer, ArrayDeque<String>> e : queues.entrySet()) out.put(e.getKey(), new ArrayList<>(e.getValue()));
+        return out;
+    }
+
+    // ===== 임대 =====
+    // 이 문서에서 편집/잠금 요청이 오면 그 사용자의 임대를 연장
+    public void renew(String userId) {
+        service.renew(docId, userId);
+    }
+
+    // 임대가 끝난 사용자의 잠금을 푼다 (휠이 알린 뒤 갱신되었으면 그대로 둔다). 반환: 풀린 줄
+    public List<Integer> expire(String userId) {
+        if (!service.leaseExpired(docId, userId)) return new ArrayList<>();
+
+        List<Integer> released = releaseAll(userId);
+        service.recordExpired();
+        return released;
+    }
+
+    // ===== 편집에 따른 이동 =====
+    // line 에 줄 added 개가 새로 생김. atLineStart 면 그 줄 내용도 통째로 밀려난다.
+    // 반환: 옮겨진 잠금이 있는지
+    public boolean shiftInsert(int line, boolean atLineStart, int added) {
+        if (added <= 0 || owners.isEmpty()) return false;
+
+        int from = atLineStart ? line : line + 1;
+        return remap(l -> (l >= from) ? l + added : l, -1);
+    }
+
+    // [first, last] 줄이 first 하나로 합쳐짐. 사라진 줄의 잠금은 first 로 모으고,
+    // first 에 이미 잠금이 있으면 그쪽이 이긴다 (나머지는 풀림).
+    // atLineStart 면 (줄 시작부터 줄 시작까지 지움) first..last-1 줄은 통째로 지워지고
+    // 남는 내용은 last 줄의 것이므로 last 의 잠금과 대기열이 이긴다
+    public boolean shiftDelete(int first, int last, boolean atLineStart) {
+        if (last <= first || owners.isEmpty()) return false;
+
+        int removed = last - first;
+        return remap(l -> {
+            if (l < first || (l == first && !atLineStart)) return l;
+            if (l <= last) return first;
+            return l - removed;
+        }, atLineStart ? last : -1);
+    }
+
+    private interface LineMap {
+        int apply(int line);
+    }
+
+    // keep: 같은 줄로 모일 때 이기는 원래 줄 (-1 이면 가장 위쪽 줄)
+    private boolean remap(LineMap map, int keep) {
+        // 위쪽 줄부터 자리를 잡아 같은 줄로 모일 때 앞쪽 잠금이 남는다
+        TreeMap<Integer, String> sorted = new TreeMap<>(owners);
+        TreeMap<Integer, String> moved = new TreeMap<>();
+        boolean changed = false;
+
+        String kept = (keep >= 0) ? sorted.get(keep) : null;
+        if (kept != null) {
+            moved.put(map.apply(keep), kept);
+            changed = map.apply(keep) != keep;
+        }
+        for (Map.Entry<Integer, String> e : sorted.entrySet()) {
+            if (kept != null && e.getKey() == keep) continue;
+            int to = map.apply(e.getKey());
+            if (to != e.getKey()) changed = true;
+            if (moved.putIfAbsent(to, e.getValue()) != null) changed = true;
+        }
+        if (!changed) return false;
+
+        List<String> before = new ArrayList<>(sorted.values());
+        owners.clear();
+        owners.putAll(moved);
+        for (String user : before) {
+            if (!owners.containsValue(user)) service.removeHolder(user, docId);
+        }
+        remapQueues(map, keep);
+        return true;
+    }
+
+    // 대기열도 같은 줄로 따라간다. 합쳐지면 keep 줄, 그다음 위쪽 줄 대기자가 앞에 선다.
+    // 합쳐진 줄의 주인이 된 사람은 대기에서 빠진다
+    private void remapQueues(LineMap map, int keep) {
+        if (queues.isEmpty()) return;
+
+        List<Map.Entry<Integer, ArrayDeque<String>>> order = new ArrayList<>(queues.entrySet());
+        if (keep >= 0) order.sort((x, y) -> Boolean.compare(x.getKey() != keep, y.getKey() != keep));
+
+        TreeMap<Integer, ArrayDeque<String>> moved = new TreeMap<>();
+        for (Map.Entry<Integer, ArrayDeque<String>> e : order) {
+            int to = map.apply(e.getKey());
+            for (String user : e.getValue()) {
+                if (user.equals(owners.get(to))) {
+                    waitingOf.remove(user);
+                    continue;
+                }
+                moved.computeIfAbsent(to, k -> new ArrayDeque<>()).addLast(user);
+                waitingOf.put(user, to);
+            }
+        }
+        queues.clear();
+        queues.putAll(moved);
+        grantWaiting();
+    }
+
+    // 줄 순서 스냅샷
+    public TreeMap<Integer, String> snapshot() {
+        return new TreeMap<>(owners);
+    }
+}
@@ -0,0 +1,17 @@
+package server.lock;
+
+// 한 사용자가 한 문서에서 가진 잠금들의 임대.
+// 그 문서에서 편집/잠금 요청이 올 때마다 deadline 이 뒤로 밀리고, 지나면 휠이 만료를 알린다.
+final class Lease {
+
+    final String docId;
+    final String userId;
+
+    volatile long deadline;      // ms (System.currentTimeMillis 기준). 0 이면 아직 휠에 안 들어감
+    volatile boolean cancelled;  // 잠금을 모두 놓아 임대가 없어짐 (휠에서 만나면 버린다)
+
+    Lease(String docId, String userId) {
+        this.docId = docId;
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,76 @@
+package server.lock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// 임대 만료용 해시 타이머 휠.
+// 칸 = 만료 틱 % 칸 수. 틱마다 그 틱의 칸 하나만 훑으므로, 임대가 아무리 많아도
+// 한 틱의 비용은 그 칸에 든 항목 수뿐이다 (임대마다 예약 작업을 만들지 않는다).
+// 갱신은 임대의 deadline 만 바꾸고 칸은 옮기지 않는다: 칸에 도달했을 때 deadline 이 아직 미래면
+// 그 틱의 칸으로 다시 넣는다. 그래서 편집마다 일어나는 갱신은 필드 쓰기 하나다.
+final class LeaseWheel {
+
+    private final long tickMs;
+    private final int mask;
+    private final List<Queue<Lease>> slots;
+    private final Consumer<Lease> onExpire;
+    private final long startMs = System.currentTimeMillis();
+
+    // 다음에 훑을 틱 (휠 스레드만 올린다)
+    private volatile long cursor = 0;
+
+    LeaseWheel(long tickMs, int size, Consumer<Lease> onExpire) {
+        this.tickMs = Math.max(1, tickMs);
+        int n = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.mask = n - 1;
+        this.slots = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) slots.add(new ConcurrentLinkedQueue<>());
+        this.onExpire = onExpire;
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("lock-lease").daemon(true).factory());
+        timer.scheduleAtFixedRate(this::advance, this.tickMs, this.tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 지난 칸에 넣으면 한 바퀴 늦어지므로 적어도 다음 틱 칸에 넣는다
+    void schedule(Lease lease) {
+        long due = Math.max(tickOf(lease.deadline), cursor + 1);
+        slots.get((int) (due & mask)).add(lease);
+    }
+
+    private long tickOf(long ms) {
+        return Math.max(0, ms - startMs) / tickMs;
+    }
+
+    // 휠 스레드: 밀린 틱이 있으면 (GC 등) 차례로 따라잡는다
+    private void advance() {
+        try {
+            long now = System.currentTimeMillis();
+            long target = tickOf(now);
+            while (cursor <= target) {
+                visit(slots.get((int) (cursor & mask)), now);
+                cursor++;
+            }
+        } catch (RuntimeException e) {
+            System.out.println("[LEASE 오류] " + e);
+        }
+    }
+
+    private void visit(Queue<Lease> slot, long now) {
+        // 이번에 다시 넣는 항목(한 바퀴 뒤 같은 칸)을 또 꺼내지 않도록 처음 크기만큼만
+        for (int n = slot.size(); n > 0; n--) {
+            Lease lease = slot.poll();
+            if (lease == null) break;
+            if (lease.cancelled) continue;
+
+            if (lease.deadline <= now) onExpire.accept(lease);
+            else schedule(lease);
+        }
+    }
+}
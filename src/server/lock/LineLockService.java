@@ -0,0 +1,152 @@
+package server.lock;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+// 서버 줄 잠금 표 모음.
+// 문서마다 독립된 표(DocLocks)를 두고, 표의 변경은 그 문서 방의 apply 단계에서만 한다.
+// 그래서 다른 문서의 LOCK/UNLOCK 끼리는 경합하지 않고, 같은 문서 안에서는 편집과 같은 순서로 처리된다.
+// 사용자 -> 잠금을 가진 문서 역색인으로 연결 종료 시 해당 문서들만 찾아가 푼다.
+// 연결은 살아 있는데 응답이 없는 클라이언트를 위해 (문서, 사용자)마다 임대를 두고,
+// 그 문서에서 편집/잠금 요청이 없이 leaseMs 가 지나면 휠이 만료를 알려 방이 잠금을 푼다.
+public class LineLockService {
+
+    private final ConcurrentHashMap<String, DocLocks> byDoc = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> byUser = new ConcurrentHashMap<>();
+
+    // ===== 임대 =====
+    private final long leaseMs;
+    private final LeaseWheel wheel; // leaseMs <= 0 이면 null (임대 없음)
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+    private volatile BiConsumer<String, String> expiryHandler; // (docId, userId)
+
+    // 최근 1분 만료 수: 초 단위 칸 60개
+    private final long[] expiredBySec = new long[60];
+    private final long[] secOf = new long[60];
+    private long expiredTotal = 0;
+
+    public LineLockService(long leaseMs, long tickMs) {
+        this.leaseMs = leaseMs;
+        this.wheel = (leaseMs > 0) ? new LeaseWheel(tickMs, 512, this::onLeaseDue) : null;
+    }
+
+    // 만료를 처리할 곳 (문서 방의 apply 단계로 넘긴다)
+    public void setExpiryHandler(BiConsumer<String, String> handler) {
+        this.expiryHandler = handler;
+    }
+
+    public DocLocks table(String docId) {
+        return byDoc.computeIfAbsent(docId, id -> new DocLocks(id, this));
+    }
+
+    // 이 사용자가 잠금을 가진 문서들
+    public Set<String> docsOf(String userId) {
+        Set<String> docs = (userId == null) ? null : byUser.get(userId);
+        return (docs == null) ? new HashSet<>() : new HashSet<>(docs);
+    }
+
+    // 문서 삭제로 방이 닫힐 때: 표와 소유자들의 역색인 항목을 함께 지운다
+    public void closeDoc(String docId) {
+        if (docId == null) return;
+
+        DocLocks locks = byDoc.remove(docId);
+        if (locks == null) return;
+
+        for (String owner : new HashSet<>(locks.snapshot().values())) removeHolder(owner, docId);
+    }
+
+    // ===== 역색인 + 임대 (DocLocks 가 갱신, 그 문서 방의 apply 단계에서만) =====
+    void addHolder(String userId, String docId) {
+        byUser.compute(userId, (k, docs) -> {
+            if (docs == null) docs = ConcurrentHashMap.newKeySet();
+            docs.add(docId);
+            return docs;
+        });
+
+        if (wheel == null) return;
+        Lease lease = leases.computeIfAbsent(leaseKey(docId, userId), k -> new Lease(docId, userId));
+        boolean fresh = lease.deadline == 0;
+        lease.deadline = System.currentTimeMillis() + leaseMs;
+        if (fresh) wheel.schedule(lease);
+    }
+
+    void removeHolder(String userId, String docId) {
+        byUser.computeIfPresent(userId, (k, docs) -> {
+            docs.remove(docId);
+            return docs.isEmpty() ? null : docs;
+        });
+
+        Lease lease = leases.remove(leaseKey(docId, userId));
+        if (lease != null) lease.cancelled = true;
+    }
+
+    // 잠금이 있으면 임대 연장 (없으면 아무것도 하지 않음)
+    void renew(String docId, String userId) {
+        if (wheel == null || userId == null) return;
+        Lease lease = leases.get(leaseKey(docId, userId));
+        if (lease != null) lease.deadline = System.currentTimeMillis() + leaseMs;
+    }
+
+    // apply 단계에서 다시 확인: 휠이 알린 뒤 갱신되었으면 휠에 되돌리고 false
+    boolean leaseExpired(String docId, String userId) {
+        if (wheel == null || userId == null) return false;
+        Lease lease = leases.get(leaseKey(docId, userId));
+        if (lease == null) return false;
+        if (lease.deadline > System.currentTimeMillis()) {
+            wheel.schedule(lease);
+            return false;
+        }
+        return true;
+    }
+
+    // 휠 스레드
+    private void onLeaseDue(Lease lease) {
+        BiConsumer<String, String> handler = expiryHandler;
+        if (handler != null) handler.accept(lease.docId, lease.userId);
+    }
+
+    private static String leaseKey(String docId, String userId) {
+        return docId + '\n' + userId;
+    }
+
+    synchronized void recordExpired() {
+        long sec = System.currentTimeMillis() / 1000;
+        int i = (int) (sec % 60);
+        if (secOf[i] != sec) {
+            secOf[i] = sec;
+            expiredBySec[i] = 0;
+        }
+        expiredBySec[i]++;
+        expiredTotal++;
+    }
+
+    // ===== 지표 =====
+    public int docCount() { return byDoc.size(); }
+
+    public int leaseCount() { return leases.size(); }
+
+    public synchronized long expiredTotal() { return expiredTotal; }
+
+    public synchronized long expiredLastMinute() {
+        long sec = System.currentTimeMillis() / 1000;
+        long n = 0;
+        for (int i = 0; i < 60; i++) {
+            if (sec - secOf[i] < 60) n += expiredBySec[i];
+        }
+        return n;
+    }
+
+    public int waiterCount() {
+        int n = 0;
+        for (DocLocks locks : byDoc.values()) n += locks.waiterCount();
+        return n;
+    }
+
+    public int lockCount() {
+        int n = 0;
+        for (DocLocks locks : byDoc.values()) n += locks.size();
+        return n;
+    }
+}
@@ -1,19 +1,116 @@
 package server.storage;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+// 파일 교체는 원자적으로: <파일>.tmp 에 다 쓰고 force 한 뒤 이름을 바꾸고, 디렉터리를 force 한다.
+// 쓰는 도중 죽어도 원래 파일은 그대로이고, 남은 .tmp 는 다음 저장이 덮어쓴다 (쓰기가 실패하면 바로 지운다).
+// force 는 GroupCommit 으로 다른 문서의 저장/기록과 묶인다.
 public class DocumentFileStore {
 
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final GroupCommit commit;
+
+    public DocumentFileStore() {
+        this(GroupCommit.disabled());
+    }
+
+    public DocumentFileStore(GroupCommit commit) {
+        this.commit = commit;
+    }
+
     public void saveObject(Serializable obj, File file) {
         if (obj == null || file == null) return;
 
+        Map<File, Serializable> one = new LinkedHashMap<>();
+        one.put(file, obj);
+        saveObjects(one);
+    }
+
+    // 여러 파일을 한 번에: 임시 파일을 모두 쓰고 force 를 한 묶음으로 기다린 뒤 이름을 바꾼다
+    // (같은 디렉터리면 디렉터리 force 도 하나). fsync 를 기다리므로 NIO 이벤트 루프에서 부르지 않는다 (Server.runBlocking)
+    public void saveObjects(Map<File, ? extends Serializable> files) {
+        List<FileChannel> channels = new ArrayList<>(files.size());
+        try {
+            for (Map.Entry<File, ? extends Serializable> e : files.entrySet()) {
+                channels.add(writeTemp(e.getValue(), e.getKey()));
+            }
+            commit.forceAll(channels);
+        } catch (IOException | RuntimeException e) {
+            // 반쯤 쓴 .tmp 가 디스크를 차지하면 뒤이은 기록/저장까지 막히므로 지운다
+            for (FileChannel ch : channels) closeQuietly(ch);
+            for (File file : files.keySet()) deleteQuietly(tmpOf(file));
+            throw new RuntimeException("saveObject failed: " + e.getMessage(), e);
+        }
+        for (FileChannel ch : channels) closeQuietly(ch);
+
+        Set<Path> dirs = new LinkedHashSet<>();
+        try {
+            for (File file : files.keySet()) {
+                replace(tmpOf(file), file.toPath());
+                Path dir = file.toPath().toAbsolutePath().getParent();
+                if (dir != null) dirs.add(dir);
+            }
+            commit.forceDirs(dirs);
+        } catch (IOException e) {
+            throw new RuntimeException("saveObject failed: " + e.getMessage(), e);
+        }
+    }
+
+    private FileChannel writeTemp(Serializable obj, File file) throws IOException {
         File parent = file.getParentFile();
         if (parent != null && !parent.exists()) parent.mkdirs();
 
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+        FileChannel ch = FileChannel.open(tmpOf(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            // 스트림을 닫으면 채널도 닫히므로 flush 만 하고, 채널은 force 가 끝난 뒤 닫는다
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)));
             out.writeObject(obj);
-        } catch (IOException e) {
-            throw new RuntimeException("saveObject failed: " + e.getMessage(), e);
+            out.flush();
+            return ch;
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(ch);
+            throw e;
+        }
+    }
+
+    private static Path tmpOf(File file) {
+        return file.toPath().resolveSibling(file.getName() + TMP_SUFFIX);
+    }
+
+    private static void replace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void closeQuietly(FileChannel ch) {
+        try {
+            ch.close();
+        } catch (IOException ignored) {
         }
     }
 
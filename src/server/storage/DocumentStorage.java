@@ -4,7 +4,10 @@ import global.object.DocumentMeta;
 import global.object.DocumentState;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DocumentStorage {
 
@@ -12,15 +15,57 @@ public class DocumentStorage {
     private static final String META_FILE  = "meta.bin";
 
     private final File rootDir;
-    private final DocumentFileStore store = new DocumentFileStore();
+    private final GroupCommit commit;
+    private final DocumentFileStore store;
+
+    // 파일 I/O 구간: 모니터 대신 ReentrantLock (가상 스레드 pinning 방지).
+    // 문서마다 따로 잠가 서로 다른 문서의 저장은 I/O 스레드들이 동시에 쓴다
+    private final ConcurrentHashMap<String, ReentrantLock> docLocks = new ConcurrentHashMap<>();
+
+    // 문서 목록 캐시: 시작할 때 한 번 읽고 생성/저장/삭제 때 바꾼다 (목록 요청은 디스크를 읽지 않는다).
+    // 캐시의 메타는 고치지 않고 새 객체로 바꿔 넣는다 (보내는 중인 목록과 공유되므로)
+    private final ConcurrentHashMap<String, DocumentMeta> metas = new ConcurrentHashMap<>();
 
     public DocumentStorage() {
         this("data");
     }
 
     public DocumentStorage(String rootPath) {
+        this(rootPath, GroupCommit.disabled());
+    }
+
+    // commit: 파일 교체와 편집 기록의 fsync 를 묶어 처리 (비활성이면 fsync 없음)
+    public DocumentStorage(String rootPath, GroupCommit commit) {
         this.rootDir = new File(rootPath == null ? "data" : rootPath);
         if (!rootDir.exists()) rootDir.mkdirs();
+        this.commit = commit;
+        this.store = new DocumentFileStore(commit);
+        loadMetas();
+    }
+
+    // 생성자에서 한 번 (아직 다른 스레드가 없다)
+    private void loadMetas() {
+        File[] dirs = rootDir.listFiles(File::isDirectory);
+        if (dirs == null) return;
+
+        for (File d : dirs) {
+            try {
+                DocumentMeta meta = store.loadObject(metaFile(d.getName()), DocumentMeta.class);
+                if (meta != null) metas.put(d.getName(), meta);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    // 문서 잠금을 잡아서 돌려준다. delete 가 잠금을 맵에서 빼므로, 기다리는 사이 빠진 잠금이면 새 잠금으로 다시 잡는다
+    private ReentrantLock lock(String docId) {
+        String key = (docId == null) ? "" : docId;
+        while (true) {
+            ReentrantLock lock = docLocks.computeIfAbsent(key, k -> new ReentrantLock());
+            lock.lock();
+            if (docLocks.get(key) == lock) return lock;
+            lock.unlock();
+        }
     }
 
     private File docDir(String docId) {
@@ -35,104 +80,149 @@ public class DocumentStorage {
         return new File(docDir(docId), META_FILE);
     }
 
-    public synchronized void ensureExists(String docId) {
-        if (docId == null || docId.isBlank()) return;
+    public void ensureExists(String docId) {
+        ReentrantLock lock = lock(docId);
+        try {
+            if (docId == null || docId.isBlank()) return;
 
-        if (!rootDir.exists()) rootDir.mkdirs();
+            if (!rootDir.exists()) rootDir.mkdirs();
 
-        File dir = docDir(docId);
-        if (!dir.exists()) dir.mkdirs();
+            File dir = docDir(docId);
+            if (!dir.exists()) dir.mkdirs();
 
-        File sFile = stateFile(docId);
-        if (!sFile.exists()) {
-            DocumentState empty = new DocumentState();
-            empty.text = "";
-            empty.images = new ArrayList<>();
-            store.saveObject(empty, sFile);
-        }
+            File sFile = stateFile(docId);
+            if (!sFile.exists()) {
+                DocumentState empty = new DocumentState();
+                empty.text = "";
+                empty.images = new ArrayList<>();
+                store.saveObject(empty, sFile);
+            }
 
-        File mFile = metaFile(docId);
-        if (!mFile.exists()) {
-            long now = System.currentTimeMillis();
-            DocumentMeta meta = new DocumentMeta(docId, "Untitled", now);
-            store.saveObject(meta, mFile);
+            File mFile = metaFile(docId);
+            if (!mFile.exists()) {
+                long now = System.currentTimeMillis();
+                DocumentMeta meta = new DocumentMeta(docId, "Untitled", now);
+                store.saveObject(meta, mFile);
+                metas.put(docId, meta);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
-    public synchronized DocumentState load(String docId) {
-        ensureExists(docId);
-        return store.loadObject(stateFile(docId), DocumentState.class);
+    public DocumentState load(String docId) {
+        ReentrantLock lock = lock(docId);
+        try {
+            ensureExists(docId);
+            return store.loadObject(stateFile(docId), DocumentState.class);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized void save(String docId, DocumentState state) {
-        ensureExists(docId);
-
-        store.saveObject(state, stateFile(docId));
-
-        DocumentMeta meta = getMeta(docId);
-        if (meta == null) meta = new DocumentMeta(docId, "Untitled", System.currentTimeMillis());
-        meta.updatedAt = System.currentTimeMillis();
-        if (meta.title == null || meta.title.isBlank()) meta.title = "Untitled";
-        store.saveObject(meta, metaFile(docId));
+    public void save(String docId, DocumentState state) {
+        ReentrantLock lock = lock(docId);
+        try {
+            ensureExists(docId);
+
+            DocumentMeta meta = getMeta(docId);
+            if (meta == null) meta = new DocumentMeta(docId, "Untitled", System.currentTimeMillis());
+            meta.updatedAt = System.currentTimeMillis();
+            if (meta.title == null || meta.title.isBlank()) meta.title = "Untitled";
+
+            // 상태와 메타를 한 묶음으로 (force/디렉터리 force 를 한 번씩 기다린다)
+            Map<File, Serializable> files = new LinkedHashMap<>();
+            files.put(stateFile(docId), state);
+            files.put(metaFile(docId), meta);
+            store.saveObjects(files);
+            metas.put(docId, meta);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized DocumentMeta getMeta(String docId) {
-        if (docId == null || docId.isBlank()) return null;
-        ensureExists(docId);
-        return store.loadObject(metaFile(docId), DocumentMeta.class);
+    // 편집 기록 (없으면 빈 기록). 파일은 첫 기록 때 생긴다
+    public OpJournal openJournal(String docId) {
+        ReentrantLock lock = lock(docId);
+        try {
+            ensureExists(docId);
+            return new OpJournal(docDir(docId), commit);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized String getTitle(String docId) {
-        DocumentMeta meta = getMeta(docId);
-        if (meta == null) return "Untitled";
-        return (meta.title == null || meta.title.isBlank()) ? "Untitled" : meta.title;
+    public DocumentMeta getMeta(String docId) {
+        ReentrantLock lock = lock(docId);
+        try {
+            if (docId == null || docId.isBlank()) return null;
+            ensureExists(docId);
+            return store.loadObject(metaFile(docId), DocumentMeta.class);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    // 문서 목록
-    public synchronized List<DocumentMeta> listMetas() {
-        if (!rootDir.exists()) rootDir.mkdirs();
-
-        File[] dirs = rootDir.listFiles(File::isDirectory);
-        if (dirs == null) return new ArrayList<>();
-
-        List<DocumentMeta> result = new ArrayList<>();
-        for (File d : dirs) {
-            String docId = d.getName();
-            try {
-                DocumentMeta meta = store.loadObject(metaFile(docId), DocumentMeta.class);
-                if (meta != null) result.add(meta);
-            } catch (Exception ignored) {}
+    public String getTitle(String docId) {
+        ReentrantLock lock = lock(docId);
+        try {
+            DocumentMeta meta = getMeta(docId);
+            if (meta == null) return "Untitled";
+            return (meta.title == null || meta.title.isBlank()) ? "Untitled" : meta.title;
+        } finally {
+            lock.unlock();
         }
+    }
 
+    // 문서 목록 (캐시에서)
+    public List<DocumentMeta> listMetas() {
+        List<DocumentMeta> result = new ArrayList<>(metas.values());
         result.sort((a, b) -> Long.compare(b.updatedAt, a.updatedAt)); // 최신순
         return result;
     }
 
     // 새 문서 생성
-    public synchronized DocumentMeta create(String title) {
+    public DocumentMeta create(String title) {
         String docId = UUID.randomUUID().toString().replace("-", "");
-        ensureExists(docId);
+        ReentrantLock lock = lock(docId);
+        try {
+            ensureExists(docId);
+
+            DocumentMeta meta = getMeta(docId);
+            if (meta == null) meta = new DocumentMeta(docId, "Untitled", System.currentTimeMillis());
+            meta.title = (title == null || title.isBlank()) ? "Untitled" : title;
+            meta.updatedAt = System.currentTimeMillis();
 
-        DocumentMeta meta = getMeta(docId);
-        if (meta == null) meta = new DocumentMeta(docId, "Untitled", System.currentTimeMillis());
-        meta.title = (title == null || title.isBlank()) ? "Untitled" : title;
-        meta.updatedAt = System.currentTimeMillis();
-        store.saveObject(meta, metaFile(docId));
+            DocumentState empty = new DocumentState();
+            empty.text = "";
+            empty.images = new ArrayList<>();
 
-        DocumentState empty = new DocumentState();
-        empty.text = "";
-        empty.images = new ArrayList<>();
-        store.saveObject(empty, stateFile(docId));
+            Map<File, Serializable> files = new LinkedHashMap<>();
+            files.put(metaFile(docId), meta);
+            files.put(stateFile(docId), empty);
+            store.saveObjects(files);
+            metas.put(docId, meta);
 
-        return meta;
+            return meta;
+        } finally {
+            lock.unlock();
+        }
     }
 
     // 문서 삭제
-    public synchronized boolean delete(String docId) {
-        if (docId == null || docId.isBlank()) return false;
-        File dir = docDir(docId);
-        if (!dir.exists()) return false;
-        return deleteRecursively(dir);
+    public boolean delete(String docId) {
+        ReentrantLock lock = lock(docId);
+        try {
+            if (docId == null || docId.isBlank()) return false;
+            metas.remove(docId);
+            File dir = docDir(docId);
+            if (!dir.exists()) return false;
+            return deleteRecursively(dir);
+        } finally {
+            // 지운 문서의 잠금은 잡은 채로 맵에서 뺀다 (만들고 지운 문서마다 잠금이 쌓이지 않게)
+            docLocks.remove(docId == null ? "" : docId, lock);
+            lock.unlock();
+        }
     }
 
     private boolean deleteRecursively(File f) {
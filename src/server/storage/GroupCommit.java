@@ -0,0 +1,176 @@
+package server.storage;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// 묶음 fsync (group commit).
+// 방(저널 기록)과 저장 스레드(state.bin/meta.bin 교체)의 force 요청을 커밋 스레드 하나가 묶어서 처리한다.
+// 한 묶음을 force 하는 동안 들어온 요청이 다음 묶음이 되고, windowMs 를 주면 첫 요청 뒤 그만큼 더 모은다.
+// 한 묶음 안에서 같은 파일/디렉터리는 한 번만 force 한다: 한 문서에 편집이 몰려도 창마다 fsync 하나,
+// 같은 디렉터리의 이름 바꾸기 여러 개도 디렉터리 fsync 하나.
+// 서로 다른 파일은 각각 force 해야 하지만 (자바에서는 파일 시스템 단위 sync 를 못 부른다)
+// 한 스레드가 연달아 내보내므로 요청한 쪽이 각자 fsync 를 기다리는 것보다 장치 큐에서 잘 합쳐진다.
+// enabled=false 면 force 없이 바로 이어서 진행한다 (프로세스 충돌에는 안전, 전원 장애에는 아님).
+public class GroupCommit {
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+    // ===== 지표 =====
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong forces = new AtomicLong();
+
+    // 파일(channel) 또는 디렉터리(dir) 하나. force 가 끝나면 커밋 스레드에서 then(실패 원인, 성공이면 null)
+    private static final class Request {
+        final FileChannel channel;
+        final Path dir;
+        final Consumer<IOException> then;
+        volatile IOException error;
+
+        Request(FileChannel channel, Path dir, Consumer<IOException> then) {
+            this.channel = channel;
+            this.dir = dir;
+            this.then = then;
+        }
+
+        Object target() { return (channel != null) ? channel : dir; }
+    }
+
+    public GroupCommit(boolean enabled, long windowMs) {
+        this.enabled = enabled;
+        this.windowMs = Math.max(0, windowMs);
+        if (enabled) Thread.ofPlatform().name("fsync").daemon(true).start(this::run);
+    }
+
+    // fsync 없이 쓰는 저장소용
+    public static GroupCommit disabled() {
+        return new GroupCommit(false, 0);
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    // 비동기: 다음 묶음에서 channel 을 force 한 뒤 then (커밋 스레드에서 불리므로 짧게).
+    // then 에 실패 원인이 오면 그 파일에 쓴 내용이 디스크에 있다고 믿으면 안 된다
+    public void force(FileChannel channel, Consumer<IOException> then) {
+        if (!enabled) {
+            then.accept(null);
+            return;
+        }
+        submit(new Request(channel, null, then));
+    }
+
+    // 동기: 파일들이 모두 디스크에 닿을 때까지 기다린다 (저장 스레드용)
+    public void forceAll(Collection<FileChannel> channels) throws IOException {
+        if (!enabled || channels.isEmpty()) return;
+
+        CountDownLatch done = new CountDownLatch(channels.size());
+        List<Request> batch = new ArrayList<>(channels.size());
+        for (FileChannel ch : channels) batch.add(new Request(ch, null, e -> done.countDown()));
+        await(batch, done);
+    }
+
+    // 동기: 이름 바꾸기가 남도록 디렉터리들을 force
+    public void forceDirs(Collection<Path> dirs) throws IOException {
+        if (!enabled || dirs.isEmpty()) return;
+
+        CountDownLatch done = new CountDownLatch(dirs.size());
+        List<Request> batch = new ArrayList<>(dirs.size());
+        for (Path dir : dirs) batch.add(new Request(null, dir, e -> done.countDown()));
+        await(batch, done);
+    }
+
+    private void await(List<Request> batch, CountDownLatch done) throws IOException {
+        for (Request r : batch) submit(r);
+        awaitUninterruptibly(done);
+        for (Request r : batch) {
+            if (r.error != null) throw r.error;
+        }
+    }
+
+    private void submit(Request r) {
+        requests.incrementAndGet();
+        queue.add(r);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // 커밋 스레드: 첫 요청이 오면 창만큼 더 모은 뒤 한 번에 처리
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                if (windowMs > 0) Thread.sleep(windowMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+
+            // 같은 대상은 처음 한 번만 (결과는 함께 나눈다)
+            Map<Object, IOException> forced = new HashMap<>();
+            for (Request r : batch) {
+                if (!forced.containsKey(r.target())) forced.put(r.target(), forceOne(r));
+                r.error = forced.get(r.target());
+            }
+            for (Request r : batch) {
+                try {
+                    r.then.accept(r.error);
+                } catch (RuntimeException e) {
+                    System.out.println("[fsync 오류] " + e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private IOException forceOne(Request r) {
+        forces.incrementAndGet();
+        try {
+            if (r.channel != null) {
+                r.channel.force(false);
+            } else {
+                try (FileChannel d = FileChannel.open(r.dir, StandardOpenOption.READ)) {
+                    d.force(true);
+                }
+            }
+            return null;
+        } catch (ClosedChannelException e) {
+            // 닫기 전에 이미 force 했다 (OpJournal.rotate)
+            return null;
+        } catch (IOException e) {
+            // 디렉터리 force 를 지원하지 않는 플랫폼도 있다: 파일 내용은 이미 force 됨
+            if (r.dir != null) return null;
+            System.out.println("[fsync 오류] " + e.getMessage());
+            return e;
+        }
+    }
+
+    // ===== 지표 =====
+    public long requestCount() { return requests.get(); }
+
+    public long forceCount() { return forces.get(); }
+}
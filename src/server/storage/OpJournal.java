@@ -0,0 +1,224 @@
+package server.storage;
+
+import global.codec.MessageCodec;
+import global.object.EditMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// 문서 하나의 편집 기록 (data/<docId>/ops.log). storage=journal 일 때 방이 적용한 편집을 덧붙인다.
+// 레코드: [int 길이][int CRC32][long seq][MessageCodec body]  (길이 = 8 + body, CRC 는 seq+body)
+// 편집당 디스크 쓰기는 그 편집 크기만큼이고, 방은 기록이 끝난 뒤에 ACK 를 보낸다.
+// fsync 를 켜면 방은 sync 로 GroupCommit 에 force 를 맡기고, 그게 끝난 뒤에 ACK 를 보낸다
+// (창 안에 들어온 여러 묶음이 force 하나로 끝난다).
+// 체크포인트: 방이 상태를 뜨는 순간 ops.log 를 ops.old.log 로 돌리고 새 ops.log 에 이어 쓴다.
+// 그 상태(journalSeq 포함)가 state.bin 에 쓰이면 ops.old.log 를 지운다.
+// 읽기: state.bin + journalSeq 이후 레코드 (ops.old.log -> ops.log). 끝이 잘린 레코드(충돌)는 잘라낸다.
+// apply 단계에서만 쓴다 (dropOld 만 저장 스레드).
+public class OpJournal {
+
+    private static final String CURRENT = "ops.log";
+    private static final String OLD = "ops.old.log";
+    private static final int RECORD_HEADER = 4 + 4 + 8;
+
+    private final File current;
+    private final File old;
+    private final GroupCommit commit;
+
+    private FileChannel channel; // 첫 기록 때 연다
+    private long seq = 0;
+    private long size = 0;
+    private volatile boolean oldPending;
+    private boolean broken; // 쓰다 만 레코드를 잘라내지 못함: 더 덧붙이면 읽을 때 그 뒤가 모두 버려진다
+
+    OpJournal(File dir, GroupCommit commit) {
+        this.current = new File(dir, CURRENT);
+        this.old = new File(dir, OLD);
+        this.commit = commit;
+        this.oldPending = old.exists();
+        this.size = current.length();
+    }
+
+    // 마지막 레코드 번호 (불러온 상태 포함)
+    public long seq() { return seq; }
+
+    // 현재 ops.log 크기
+    public long size() { return size; }
+
+    // 돌려 둔 ops.old.log 가 아직 남았는지 (체크포인트 저장 중)
+    public boolean checkpointPending() { return oldPending; }
+
+    // 불러오기: afterSeq 이후 레코드 (오래된 것부터)
+    public List<EditMessage> replay(long afterSeq) {
+        seq = afterSeq;
+        List<EditMessage> out = new ArrayList<>();
+        try {
+            readInto(old, afterSeq, out, false);
+            size = readInto(current, afterSeq, out, true);
+        } catch (IOException e) {
+            throw new RuntimeException("journal replay failed: " + e.getMessage(), e);
+        }
+        return out;
+    }
+
+    // 반환: 온전한 레코드가 끝나는 위치. truncate 면 그 뒤(쓰다 만 레코드)를 잘라낸다
+    private long readInto(File file, long afterSeq, List<EditMessage> out, boolean truncate) throws IOException {
+        if (!file.exists()) return 0;
+
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = ch.size();
+            long pos = 0;
+            ByteBuffer head = ByteBuffer.allocate(RECORD_HEADER);
+            while (pos + RECORD_HEADER <= fileSize) {
+                head.clear();
+                ch.read(head, pos);
+                head.flip();
+                int len = head.getInt();
+                int crc = head.getInt();
+                long recSeq = head.getLong();
+                if (len < 8 || pos + 4 + 4 + len > fileSize) break;
+
+                ByteBuffer body = ByteBuffer.allocate(len - 8);
+                ch.read(body, pos + RECORD_HEADER);
+                if (crc != crcOf(recSeq, body.array())) break;
+
+                if (recSeq > afterSeq) out.add(MessageCodec.decode(body.array()));
+                seq = Math.max(seq, recSeq);
+                pos += 4 + 4 + len;
+            }
+            if (truncate && pos < fileSize) ch.truncate(pos);
+            return pos;
+        }
+    }
+
+    // 적용된 편집들을 한 번의 write 로 덧붙인다. 반환: 마지막 레코드 번호
+    public long append(List<EditMessage> ops) {
+        if (broken) throw new RuntimeException("journal append failed: unrecoverable partial record");
+        try {
+            List<byte[]> bodies = new ArrayList<>(ops.size());
+            int total = 0;
+            for (EditMessage op : ops) {
+                byte[] body = MessageCodec.encode(op);
+                bodies.add(body);
+                total += RECORD_HEADER + body.length;
+            }
+
+            ByteBuffer buf = ByteBuffer.allocate(total);
+            long s = seq;
+            for (byte[] body : bodies) {
+                s++;
+                buf.putInt(8 + body.length);
+                buf.putInt(crcOf(s, body));
+                buf.putLong(s);
+                buf.put(body);
+            }
+            buf.flip();
+
+            FileChannel ch = channel();
+            try {
+                while (buf.hasRemaining()) ch.write(buf);
+            } catch (IOException e) {
+                discardPartial(ch, e);
+                throw e;
+            }
+            seq = s;
+            size += total;
+            return seq;
+        } catch (IOException e) {
+            throw new RuntimeException("journal append failed: " + e.getMessage(), e);
+        }
+    }
+
+    // append 가 돌아와도 fsync 전인지 (sync 로 기다려야 하는지)
+    public boolean deferredSync() { return commit.isEnabled(); }
+
+    // 지금까지 덧붙인 기록이 디스크에 닿으면 then(null), force 가 실패하면 then(원인). 커밋 스레드에서 불린다
+    public void sync(Consumer<IOException> then) {
+        if (channel == null) {
+            then.accept(null);
+            return;
+        }
+        commit.force(channel, then);
+    }
+
+    // 쓰다 실패(ENOSPC 등)한 묶음을 잘라 파일 끝을 마지막 온전한 레코드로 되돌린다.
+    // 남겨 두면 다음 기록이 그 뒤에 붙고, 읽을 때 깨진 레코드에서 멈춰 이후 기록을 모두 잘라낸다
+    private void discardPartial(FileChannel ch, IOException cause) {
+        try {
+            ch.truncate(size);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            broken = true;
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(current.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    // 체크포인트 시작: 지금까지의 기록을 ops.old.log 로 돌린다 (돌려 둔 게 남아 있으면 하지 않음)
+    public boolean rotate() {
+        if (oldPending) return false;
+        // 묶음 force 를 기다리는 기록이 있을 수 있으니 닫기 전에 직접 force
+        if (channel != null && commit.isEnabled()) {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        close();
+        if (current.exists() && !current.renameTo(old)) return false;
+
+        oldPending = true;
+        broken = false; // 깨진 꼬리는 ops.old.log 로 갔다 (읽을 때 거기서 멈추고 새 ops.log 로 넘어간다)
+        size = 0;
+        return true;
+    }
+
+    // 쓰기/fsync 실패 뒤 복구: state.bin 이 seq 까지 덮었으므로 두 기록 파일을 버리고 seq 다음부터 새로 쓴다
+    // (실패한 파일은 중간이 비었을 수 있어 그 뒤에 이어 쓰면 읽을 때 잘려 나간다)
+    public void reset(long seq) {
+        close();
+        // 지우지 못하면 더 덧붙이지 않는다 (방은 다시 복구 저장으로 간다)
+        broken = (current.exists() && !current.delete()) | (old.exists() && !old.delete());
+        oldPending = false;
+        size = 0;
+        this.seq = seq;
+    }
+
+    // 체크포인트 저장이 끝난 뒤 (저장 스레드)
+    public void dropOld() {
+        old.delete();
+        oldPending = false;
+    }
+
+    public void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private static int crcOf(long seq, byte[] body) {
+        CRC32 crc = new CRC32();
+        ByteBuffer b = ByteBuffer.allocate(8);
+        b.putLong(seq);
+        crc.update(b.array());
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,156 @@
+package server.storage;
+
+import global.object.DocumentState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// write-behind 저장.
+// 편집 쪽은 markDirty 로 "이 문서가 바뀌었다"만 남기고 바로 돌아간다 (CAS 한 번).
+// 문서마다 예약된 저장은 많아야 하나: 첫 변경이 delayMs 뒤의 저장을 예약하고, 그 사이 변경은 모두 거기에 합쳐진다.
+// 상태를 뜨는 일(source)은 저장할 때 I/O 스레드가 부르고, 직렬화/디스크 쓰기도 모두 이 서비스의 I/O 스레드에서 한다.
+// 저장 중에 들어온 변경은 다음 저장을 하나 더 예약한다.
+public class PersistenceService {
+
+    private final DocumentStorage storage;
+    private final long delayMs;
+    private final ScheduledExecutorService io;
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+
+    // ===== 지표 =====
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong saveNanos = new AtomicLong();
+
+    // 문서 하나의 저장 자리
+    private static final class Slot {
+        final AtomicBoolean queued = new AtomicBoolean(false);
+        final ReentrantLock writing = new ReentrantLock(); // 같은 문서 저장끼리/삭제와 겹치지 않게
+        volatile Supplier<DocumentState> source;
+        volatile boolean dead;
+    }
+
+    public PersistenceService(DocumentStorage storage, int threads, long delayMs) {
+        this.storage = storage;
+        this.delayMs = Math.max(0, delayMs);
+
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(Math.max(1, threads),
+                Thread.ofPlatform().name("persist-", 0).daemon(true).factory());
+        pool.setRemoveOnCancelPolicy(true);
+        this.io = pool;
+    }
+
+    // 편집 경로에서 호출. source 는 I/O 스레드에서 불린다 (null 을 주면 저장하지 않음)
+    public void markDirty(String docId, Supplier<DocumentState> source) {
+        if (docId == null || source == null) return;
+
+        Slot slot = slots.computeIfAbsent(docId, k -> new Slot());
+        slot.source = source;
+        if (slot.queued.compareAndSet(false, true)) schedule(docId, slot, delayMs);
+        else coalesced.incrementAndGet();
+    }
+
+    // 저널 체크포인트: 방이 기록 번호와 맞춰 떠 둔 상태를 쓰고, 성공하면 done (지난 기록 지우기), 실패하면 failed
+    public void checkpoint(String docId, DocumentState state, Runnable done, Runnable failed) {
+        if (docId == null || state == null) return;
+
+        Slot slot = slots.computeIfAbsent(docId, k -> new Slot());
+        try {
+            io.execute(() -> writeState(docId, slot, () -> state, done, failed));
+        } catch (RejectedExecutionException ignored) {
+            // 종료 중: 기록이 남아 있으므로 다음에 불러올 때 다시 적용된다
+        }
+    }
+
+    // 디스크를 기다리는 요청 처리 (NIO 이벤트 루프에서 넘어온 문서 생성/삭제)를 I/O 스레드에서
+    public void execute(Runnable task) {
+        try {
+            io.execute(task);
+        } catch (RejectedExecutionException ignored) {
+            // 종료 중
+        }
+    }
+
+    private void schedule(String docId, Slot slot, long delay) {
+        try {
+            io.schedule(() -> write(docId, slot), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            slot.queued.set(false);
+        }
+    }
+
+    private void write(String docId, Slot slot) {
+        // 여기서부터 들어오는 변경은 새 저장을 예약한다 (지금 뜨는 상태에 들어갈 수도 있지만 한 번 더 써도 무해)
+        slot.queued.set(false);
+        writeState(docId, slot, slot.source, null, null);
+    }
+
+    private void writeState(String docId, Slot slot, Supplier<DocumentState> source, Runnable done, Runnable failed) {
+        slot.writing.lock();
+        try {
+            if (slot.dead) return;
+
+            long t0 = System.nanoTime();
+            DocumentState state = source.get();
+            if (state == null) return;
+
+            storage.save(docId, state);
+            saves.incrementAndGet();
+            saveNanos.addAndGet(System.nanoTime() - t0);
+            if (done != null) done.run();
+        } catch (RuntimeException e) {
+            System.out.println("[저장 오류] " + docId + ": " + e.getMessage());
+            if (failed != null) failed.run();
+        } finally {
+            slot.writing.unlock();
+        }
+    }
+
+    // 문서 삭제 전: 진행 중인 저장이 끝나길 기다리고 이후 저장은 버린다 (지운 파일을 되살리지 않게)
+    public void forget(String docId) {
+        Slot slot = (docId == null) ? null : slots.remove(docId);
+        if (slot == null) return;
+
+        slot.writing.lock();
+        try {
+            slot.dead = true;
+        } finally {
+            slot.writing.unlock();
+        }
+    }
+
+    // 서버 종료: 예약된 저장을 지금 이 스레드에서 모두 쓴다
+    public void flushAll() {
+        List<Map.Entry<String, Slot>> pending = new ArrayList<>();
+        for (Map.Entry<String, Slot> e : slots.entrySet()) {
+            if (e.getValue().queued.get()) pending.add(e);
+        }
+        for (Map.Entry<String, Slot> e : pending) write(e.getKey(), e.getValue());
+    }
+
+    // ===== 지표 =====
+    public int pendingCount() {
+        int n = 0;
+        for (Slot slot : slots.values()) if (slot.queued.get()) n++;
+        return n;
+    }
+
+    public long saveCount() { return saves.get(); }
+
+    public long coalescedCount() { return coalesced.get(); }
+
+    public long avgSaveMs() {
+        long n = saves.get();
+        return (n == 0) ? 0 : saveNanos.get() / n / 1_000_000;
+    }
+}
@@ -4,16 +4,19 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.function.Supplier;
 
 public class ServerDashboardUI {
     private JFrame frame;
     private JTextArea t_display;
+    private JLabel l_stats;
     private JButton b_exit;
     private JButton b_connect;
     private JButton b_disconnect;
 
     private Runnable onStartServer;     // "서버 시작" 눌렀을 때 호출
     private Runnable onStopServer;      // "서버 종료" 눌렀을 때 호출
+    private Supplier<String> statsSupplier; // 1초마다 상단 지표 라벨 갱신
 
     public ServerDashboardUI() {
         frame = new JFrame("NoteSwing Server");
@@ -27,10 +30,24 @@ public class ServerDashboardUI {
     }
 
     public void buildGUI() {
+        frame.add(createStatsPanel(), BorderLayout.NORTH);
         frame.add(createDisplayPanel(), BorderLayout.CENTER);
         frame.add(createControlPanel(), BorderLayout.SOUTH);
     }
 
+    public JPanel createStatsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        l_stats = new JLabel(" ");
+        l_stats.setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+        panel.add(l_stats, BorderLayout.CENTER);
+
+        new Timer(1000, e -> {
+            if (statsSupplier != null) l_stats.setText(statsSupplier.get());
+        }).start();
+
+        return panel;
+    }
+
     public JPanel createDisplayPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         t_display = new JTextArea();
@@ -105,4 +122,8 @@ public class ServerDashboardUI {
     public void setOnStopServer(Runnable r) {
         this.onStopServer = r;
     }
+
+    public void setStatsSupplier(Supplier<String> s) {
+        this.statsSupplier = s;
+    }
 }
\ No newline at end of file